@@ -2,10 +2,22 @@ import static org.junit.jupiter.api.Assertions.assertTimeout;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.junit.jupiter.api.Test;
 
@@ -14,7 +26,7 @@ import org.junit.jupiter.api.Test;
  * identify runtime issues if you are not passing the benchmark script on
  * the lab computers. However, it does not replace running the benchmark
  * script on the lab computers, which compares two different releases of
- * your code.
+ * your code. Use RegressionTest to compare two releases locally.
  *
  * This test is not part of the project 3 test group. You have to run it
  * separately.
@@ -96,6 +108,231 @@ public class BenchmarkTest {
 		assertTrue((singleAverage - threadAverage) > 0);
 	}
 
+	@Test
+	public void testExactSearch() {
+		// compare this with an older release using the exact scenarios in RegressionTest
+		String path = Paths.get("text", "gutenberg").toString();
+		String query = Paths.get("query", "gutenberg.txt").toString();
+
+		String[] args1 = { "-path", path };
+		String[] args2 = { "-path", path, "-search", query, "-exact" };
+
+		double indexAverage = average(benchmark(args1));
+		double exactAverage = average(benchmark(args2)) - indexAverage;
+
+		System.out.println("\nExact Search Benchmark:\n");
+		System.out.printf("   Index: %10.6f s%n", indexAverage / 1000000000.0);
+		System.out.printf("   Exact: %10.6f s (excluding index)%n%n", exactAverage / 1000000000.0);
+	}
+
+	@Test
+	public void testSearchAllocation() throws IOException {
+		String path = Paths.get("text").toString();
+		Path query = Paths.get("query", "letters.txt");
+		int queries = Files.readAllLines(query, StandardCharsets.UTF_8).size();
+
+		// single threaded, so all of the allocation happens in this thread
+		String[] args1 = { "-path", path };
+		String[] args2 = { "-path", path, "-search", query.toString() };
+
+		benchmark(args1);
+		benchmark(args2);
+
+		double indexBytes = allocated(args1);
+		double searchBytes = allocated(args2) - indexBytes;
+
+		System.out.println("\nSearch Allocation Benchmark:\n");
+		System.out.printf("   Index: %12.2f MB%n", indexBytes / (1024 * 1024));
+		System.out.printf("  Search: %12.2f MB (excluding index)%n", searchBytes / (1024 * 1024));
+		System.out.printf("   Query: %12.2f KB per query line%n%n", searchBytes / 1024 / queries);
+	}
+
+	@Test
+	public void testIndexAllocation() throws IOException {
+		Path path = Paths.get("text", "gutenberg");
+		long bytes = 0;
+
+		try (DirectoryStream<Path> listing = Files.newDirectoryStream(path)) {
+			for (Path file : listing) {
+				bytes += Files.size(file);
+			}
+		}
+
+		// single threaded, so all of the allocation happens in this thread
+		String[] args = { "-path", path.toString() };
+
+		benchmark(args);
+
+		double megabytes = (double) bytes / (1024 * 1024);
+		double allocated = (double) allocated(args) / (1024 * 1024);
+		double seconds = average(benchmark(args)) / 1000000000.0;
+
+		System.out.println("\nIndex Allocation Benchmark:\n");
+		System.out.printf("      Input: %10.2f MB%n", megabytes);
+		System.out.printf("  Allocated: %10.2f MB%n", allocated);
+		System.out.printf("  Per Input: %10.2f MB allocated per MB%n", allocated / megabytes);
+		System.out.printf(" Throughput: %10.2f MB/s%n%n", megabytes / seconds);
+	}
+
+	/**
+	 * Returns the number of bytes allocated by this thread while running
+	 * {@link Driver} once. Only meaningful for single threaded runs.
+	 *
+	 * @param args arguments to pass to {@link Driver}
+	 * @return bytes allocated
+	 */
+	public static long allocated(String[] args) {
+		com.sun.management.ThreadMXBean bean =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long id = Thread.currentThread().getId();
+
+		long before = bean.getThreadAllocatedBytes(id);
+		runDriver(args);
+		return bean.getThreadAllocatedBytes(id) - before;
+	}
+
+	@Test
+	public void testPhraseSearch() {
+		// phrase search intersects the long position lists of common words
+		String path = Paths.get("text", "gutenberg").toString();
+		String query = Paths.get("query", "phrase.txt").toString();
+
+		String[] args1 = { "-path", path };
+		String[] args2 = { "-path", path, "-search", query, "-phrase" };
+
+		double indexAverage = average(benchmark(args1));
+		double phraseAverage = average(benchmark(args2)) - indexAverage;
+
+		System.out.println("\nPhrase Search Benchmark:\n");
+		System.out.printf("   Index: %10.6f s%n", indexAverage / 1000000000.0);
+		System.out.printf("  Phrase: %10.6f s (excluding index)%n%n", phraseAverage / 1000000000.0);
+
+		// searching should cost much less than building the index
+		assertTrue(phraseAverage < indexAverage);
+	}
+
+	@Test
+	public void testBooleanSearch() throws IOException {
+		// pairs every stem with a very common stem, so intersections are small
+		Path stems = TestUtilities.ACTUAL_PATH.resolve("query-guten-stems.txt");
+		Path query = TestUtilities.ACTUAL_PATH.resolve("query-guten-boolean.txt");
+		writeStems(Paths.get("text", "gutenberg"), stems);
+
+		List<String> lines = new ArrayList<>();
+		for (String stem : Files.readAllLines(stems, StandardCharsets.UTF_8)) {
+			lines.add("+" + stem + " +the");
+		}
+		Files.write(query, lines, StandardCharsets.UTF_8);
+
+		String path = Paths.get("text").toString();
+
+		String[] args1 = { "-path", path };
+		String[] args2 = { "-path", path, "-search", query.toString(), "-exact" };
+		String[] args3 = { "-path", path, "-search", query.toString(), "-exact", "-boolean" };
+
+		double indexAverage = average(benchmark(args1));
+		double orAverage = average(benchmark(args2)) - indexAverage;
+		double andAverage = average(benchmark(args3)) - indexAverage;
+
+		System.out.println("\nBoolean vs Regular Search Benchmark:\n");
+		System.out.printf("   Index: %10.6f s%n", indexAverage / 1000000000.0);
+		System.out.printf("      OR: %10.6f s (excluding index)%n", orAverage / 1000000000.0);
+		System.out.printf("     AND: %10.6f s (excluding index)%n", andAverage / 1000000000.0);
+		System.out.printf(" Speedup: %10.6f %n%n", orAverage / andAverage);
+
+		assertTrue((orAverage - andAverage) > 0);
+	}
+
+	@Test
+	public void testRankingCost() throws IOException {
+		String path = Paths.get("text").toString();
+		Path query = Paths.get("query", "letters.txt");
+		int queries = Files.readAllLines(query, StandardCharsets.UTF_8).size();
+
+		String[] args1 = { "-path", path };
+		String[] args2 = { "-path", path, "-search", query.toString() };
+		String[] args3 = { "-path", path, "-search", query.toString(), "-rank", "bm25" };
+
+		double indexAverage = average(benchmark(args1));
+		double defaultAverage = average(benchmark(args2)) - indexAverage;
+		double bm25Average = average(benchmark(args3)) - indexAverage;
+
+		System.out.println("\nRanking Cost Benchmark:\n");
+		System.out.printf(" Default: %10.3f ms per query%n", defaultAverage / 1000000.0 / queries);
+		System.out.printf("    BM25: %10.3f ms per query%n", bm25Average / 1000000.0 / queries);
+		System.out.printf("   Ratio: %10.6f %n%n", bm25Average / defaultAverage);
+	}
+
+	@Test
+	public void testStatsOverhead() {
+		String path = Paths.get("text").toString();
+		String query = Paths.get("query", "letters.txt").toString();
+		String stats = TestUtilities.ACTUAL_PATH.resolve("stats-overhead.json").toString();
+
+		String[] args1 = { "-path", path, "-search", query, "-threads", String.valueOf(THREADS) };
+		String[] args2 = { "-path", path, "-search", query, "-threads", String.valueOf(THREADS), "-stats", stats };
+
+		double offAverage = average(benchmark(args1));
+		double onAverage = average(benchmark(args2));
+
+		System.out.println("\nStatistics Overhead Benchmark:\n");
+		System.out.printf("     Off: %10.6f s%n", offAverage / 1000000000.0);
+		System.out.printf("      On: %10.6f s%n", onAverage / 1000000000.0);
+		System.out.printf("Overhead: %9.2f %%%n%n", (onAverage - offAverage) / offAverage * 100);
+
+		// this is the cost of turning statistics on, compare a release from before
+		// statistics with RegressionTest to measure the cost of leaving them off
+		assertTrue(onAverage / offAverage < 1.10);
+	}
+
+	/**
+	 * Writes every word stem found in the expected index output of the text
+	 * files in a directory to a query file, one stem per line.
+	 *
+	 * @param directory directory of text files with expected index output
+	 * @param output    query file to write
+	 * @throws IOException if unable to read or write the files
+	 */
+	public static void writeStems(Path directory, Path output) throws IOException {
+		Set<String> stems = new TreeSet<>();
+		Pattern pattern = Pattern.compile("^\t\"([^\"]+)\": \\{");
+
+		try (DirectoryStream<Path> listing = Files.newDirectoryStream(directory)) {
+			for (Path file : listing) {
+				String name = file.getFileName().toString();
+				name = "index-text-guten-" + name.substring(0, name.lastIndexOf('.')) + ".json";
+				Path expected = TestUtilities.EXPECTED_PATH.resolve("index-text").resolve(name);
+
+				for (String line : Files.readAllLines(expected, StandardCharsets.UTF_8)) {
+					Matcher matcher = pattern.matcher(line);
+
+					if (matcher.find()) {
+						stems.add(matcher.group(1));
+					}
+				}
+			}
+		}
+
+		Files.createDirectories(output.getParent());
+		Files.write(output, stems, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the average of the timed runs, ignoring the warmup runs.
+	 *
+	 * @param runs runtimes of the warmup and timed runs
+	 * @return average runtime of the timed runs
+	 */
+	public static double average(long[] runs) {
+		long total = 0;
+
+		for (int i = WARM_RUNS; i < (WARM_RUNS + TIME_RUNS); i++) {
+			total += runs[i];
+		}
+
+		return (double) total / TIME_RUNS;
+	}
+
 	public long[] benchmark(String[] args) {
 		long start = 0;
 		long[] runs = new long[WARM_RUNS + TIME_RUNS];
@@ -0,0 +1,122 @@
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+/*
+ * Tests boolean search. When the -boolean flag is provided, each word in a
+ * query line may be prefixed by a "+" (the location must contain the word) or
+ * a "-" (the location must not contain the word). Words without a prefix are
+ * optional, but a location must contain at least one optional word if there
+ * are no required words. The count only includes required and optional words.
+ *
+ * Words match exactly with the -exact flag, and by prefix otherwise. The
+ * normalized query sorts the stems along with their "+" or "-" prefixes.
+ */
+public class BooleanTest {
+
+	public static final Duration TIMEOUT = Duration.ofMinutes(3);
+
+	@Nested
+	public class ExceptionsTest {
+
+		@Test
+		public void testPlainQueries() {
+			String path = Paths.get("text", "simple").toString();
+			String query = Paths.get("query", "simple.txt").toString();
+			String[] args = { "-path", path, "-search", query, "-boolean" };
+			assertTimeout(Duration.ofSeconds(30), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+
+		@Test
+		public void testEmptyIndex() {
+			String query = Paths.get("query", "boolean.txt").toString();
+			String[] args = { "-search", query, "-boolean" };
+			assertTimeout(Duration.ofSeconds(30), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+	}
+
+	public static class BooleanExactTest {
+
+		@TestFactory
+		public Stream<DynamicTest> testSimple() {
+			String[][] tests = {
+					{ "simple", "boolean.txt", Paths.get("text", "simple").toString() }
+			};
+
+			return generateTests(tests);
+		}
+
+		@TestFactory
+		public Stream<DynamicTest> testRFCs() {
+			String[][] tests = {
+					{ "rfcs", "boolean.txt", Paths.get("text", "rfcs").toString() }
+			};
+
+			return generateTests(tests);
+		}
+
+		public Stream<DynamicTest> generateTests(String[][] tests) {
+			return Stream.of(tests).map(params -> dynamicTest(params[0], () -> {
+				String filename = String.format("results-text-boolean-exact-%s.json", params[0]);
+				Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+				Path expected = TestUtilities.EXPECTED_PATH.resolve("results-text-boolean").resolve(filename);
+
+				String[] args = {
+						"-path", params[2],
+						"-search", Paths.get("query", params[1]).toString(),
+						"-results", actual.toString(),
+						"-boolean",
+						"-exact"
+				};
+
+				assertTimeout(TIMEOUT, () -> {
+					TestUtilities.checkOutput(expected, actual, args);
+				});
+			}));
+		}
+	}
+
+	@Nested
+	public class NestedBooleanExactTest extends BooleanExactTest {
+		// Placeholder for nesting tests
+	}
+
+	@Nested
+	public class NestedBooleanPartialTest extends BooleanExactTest {
+		// All of the same tests as BooleanExactTest, but this time WITHOUT the
+		// -exact search flag.
+
+		@Override
+		public Stream<DynamicTest> generateTests(String[][] tests) {
+			return Stream.of(tests).map(params -> dynamicTest(params[0], () -> {
+				String filename = String.format("results-text-boolean-partial-%s.json", params[0]);
+				Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+				Path expected = TestUtilities.EXPECTED_PATH.resolve("results-text-boolean").resolve(filename);
+
+				String[] args = {
+						"-path", params[2],
+						"-search", Paths.get("query", params[1]).toString(),
+						"-results", actual.toString(),
+						"-boolean"
+				};
+
+				assertTimeout(TIMEOUT, () -> {
+					TestUtilities.checkOutput(expected, actual, args);
+				});
+			}));
+		}
+	}
+}
@@ -0,0 +1,184 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Tests the simulated search cluster. When the -cluster flag is provided with
+ * a number of nodes, the Driver acts as the coordinator: it forks that many
+ * local worker JVMs, gives each worker a slice of the -path (or crawl
+ * frontier) to index, and merges the worker output over local sockets. The
+ * merged output must be identical to the single process output, and no
+ * worker processes may be left running once the Driver returns.
+ *
+ * This test is not part of any project test group. You have to run it
+ * separately.
+ */
+public class ClusterTest {
+
+	public static final int NODES = 3;
+
+	public static final Duration TIMEOUT = Duration.ofMinutes(3);
+
+	/**
+	 * Runs the Driver and compares its output to the expected output, and then
+	 * checks that every worker process has exited.
+	 *
+	 * @param expected path to expected output
+	 * @param actual   path to actual output
+	 * @param args     arguments to pass to {@link Driver}
+	 */
+	public static void checkCluster(Path expected, Path actual, String[] args) {
+		assertTimeout(TIMEOUT, () -> {
+			TestUtilities.checkOutput(expected, actual, args);
+		});
+
+		long workers = ProcessHandle.current().children().filter(ProcessHandle::isAlive).count();
+		assertEquals(0, workers, "Worker processes still running.");
+	}
+
+	@Nested
+	public class TextTest {
+
+		@Test
+		public void testIndex() {
+			String filename = "index-text-all.json";
+			Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+			Path expected = TestUtilities.EXPECTED_PATH.resolve("index-text").resolve(filename);
+
+			String[] args = {
+					"-path", Paths.get("text").toString(),
+					"-index", actual.toString(),
+					"-cluster", Integer.toString(NODES)
+			};
+
+			checkCluster(expected, actual, args);
+		}
+
+		@Test
+		public void testLocations() {
+			String filename = "index-text-locations.json";
+			Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+			Path expected = TestUtilities.EXPECTED_PATH.resolve(filename);
+
+			String[] args = {
+					"-path", Paths.get("text").toString(),
+					"-locations", actual.toString(),
+					"-cluster", Integer.toString(NODES)
+			};
+
+			checkCluster(expected, actual, args);
+		}
+
+		@Test
+		public void testExactResults() {
+			String filename = "results-text-letters-all.json";
+			Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+			Path expected = TestUtilities.EXPECTED_PATH.resolve("results-text-exact").resolve(filename);
+
+			String[] args = {
+					"-path", Paths.get("text").toString(),
+					"-search", Paths.get("query", "letters.txt").toString(),
+					"-results", actual.toString(),
+					"-exact",
+					"-cluster", Integer.toString(NODES)
+			};
+
+			checkCluster(expected, actual, args);
+		}
+
+		@Test
+		public void testPartialResults() {
+			String filename = "results-text-letters-all.json";
+			Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+			Path expected = TestUtilities.EXPECTED_PATH.resolve("results-text-partial").resolve(filename);
+
+			String[] args = {
+					"-path", Paths.get("text").toString(),
+					"-search", Paths.get("query", "letters.txt").toString(),
+					"-results", actual.toString(),
+					"-cluster", Integer.toString(NODES)
+			};
+
+			checkCluster(expected, actual, args);
+		}
+
+		@Test
+		public void testMoreNodesThanFiles() {
+			String filename = "index-text-simple-hello.json";
+			Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+			Path expected = TestUtilities.EXPECTED_PATH.resolve("index-text").resolve(filename);
+
+			String[] args = {
+					"-path", Paths.get("text", "simple", "hello.txt").toString(),
+					"-index", actual.toString(),
+					"-cluster", Integer.toString(NODES)
+			};
+
+			checkCluster(expected, actual, args);
+		}
+	}
+
+	@Nested
+	public class URLTest {
+
+		@Test
+		public void testIndex() {
+			String filename = "index-url-birds.json";
+			Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+			Path expected = TestUtilities.EXPECTED_PATH.resolve("index-url").resolve(filename);
+
+			String[] args = {
+					"-url", "https://www.cs.usfca.edu/~cs212/birds/birds.html",
+					"-limit", Integer.toString(50),
+					"-index", actual.toString(),
+					"-cluster", Integer.toString(NODES)
+			};
+
+			checkCluster(expected, actual, args);
+		}
+
+		@Test
+		public void testLocations() {
+			String filename = "location-url-birds.json";
+			Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+			Path expected = TestUtilities.EXPECTED_PATH.resolve("location-url").resolve(filename);
+
+			String[] args = {
+					"-url", "https://www.cs.usfca.edu/~cs212/birds/birds.html",
+					"-limit", Integer.toString(50),
+					"-locations", actual.toString(),
+					"-cluster", Integer.toString(NODES)
+			};
+
+			checkCluster(expected, actual, args);
+		}
+	}
+
+	@Nested
+	public class ExceptionsTest {
+
+		@Test
+		public void testZeroNodes() {
+			String path = Paths.get("text", "simple").toString();
+			String[] args = { "-path", path, "-cluster", "0" };
+			assertTimeout(Duration.ofSeconds(30), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+
+		@Test
+		public void testInvalidNodes() {
+			String path = Paths.get("text", "simple").toString();
+			String[] args = { "-path", path, "-cluster", "fox" };
+			assertTimeout(Duration.ofSeconds(30), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+	}
+}
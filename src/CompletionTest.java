@@ -0,0 +1,200 @@
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+/*
+ * Tests prefix completion. When the -complete flag is provided, each line of
+ * the file given by the flag is a prefix typed so far. The prefix is cleaned
+ * like a query (but NOT stemmed), and the Driver should find the top word
+ * stems in the index that start with that prefix, ranked by their total
+ * count across all locations (ties sorted by stem). The number of stems is
+ * given by the -top flag (or 10 if not provided).
+ *
+ * The completions are written as JSON to the file given by the -completions
+ * flag (or completions.json if no file is provided), as an array sorted by
+ * prefix where each element has the "prefix" and its "completions", and each
+ * completion has the "word" stem and its "count".
+ *
+ * Since clients ask for completions on every keystroke, completions should be
+ * precomputed (for example, as a trie with the top stems cached at each node)
+ * so each prefix is answered without scanning every stem.
+ */
+public class CompletionTest {
+
+	public static final Duration TIMEOUT = Duration.ofMinutes(3);
+
+	public static class CompletionOutputTest {
+
+		// These tests take awhile. Only run them if you are passing the others!
+		@TestFactory
+		public Stream<DynamicTest> testGutenberg() {
+			String[][] tests = {
+					{ "guten", null },
+					{ "guten-top3", "3" }
+			};
+
+			return generateTests(tests);
+		}
+
+		public String[] arguments(String[] params, Path actual) {
+			String path = Paths.get("text", "gutenberg").toString();
+			String query = Paths.get("query", "prefixes.txt").toString();
+
+			if (params[1] == null) {
+				return new String[] { "-path", path, "-complete", query, "-completions", actual.toString() };
+			}
+
+			return new String[] {
+					"-path", path, "-complete", query, "-completions", actual.toString(), "-top", params[1]
+			};
+		}
+
+		public Stream<DynamicTest> generateTests(String[][] tests) {
+			return Stream.of(tests).map(params -> dynamicTest(params[0], () -> {
+				String filename = String.format("completions-text-%s.json", params[0]);
+				Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+				Path expected = TestUtilities.EXPECTED_PATH.resolve("completions-text").resolve(filename);
+
+				String[] args = arguments(params, actual);
+
+				assertTimeout(TIMEOUT, () -> {
+					TestUtilities.checkOutput(expected, actual, args);
+				});
+			}));
+		}
+	}
+
+	@Nested
+	public class NestedCompletionOutputTest extends CompletionOutputTest {
+		// Placeholder for nesting tests
+	}
+
+	@Nested
+	public class CompletionOutputThreads extends CompletionOutputTest {
+
+		@Override
+		public String[] arguments(String[] params, Path actual) {
+			String[] args = super.arguments(params, actual);
+			String[] threads = new String[args.length + 2];
+			System.arraycopy(args, 0, threads, 0, args.length);
+			threads[args.length] = "-threads";
+			threads[args.length + 1] = "5";
+			return threads;
+		}
+	}
+
+	@Nested
+	public class ExceptionsTest {
+
+		@Test
+		public void testDefaultOutput() throws IOException {
+			String path = Paths.get("text", "simple", "hello.txt").toString();
+			String query = Paths.get("query", "prefixes.txt").toString();
+			String[] args = { "-path", path, "-complete", query, "-completions" };
+
+			// make sure to delete old completions.json if it exists
+			Path output = Paths.get("completions.json");
+			Files.deleteIfExists(output);
+
+			assertTimeout(Duration.ofSeconds(30), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+
+			assertTrue(Files.isReadable(output), "Unable to read completions.json.");
+		}
+
+		@Test
+		public void testMissingPrefixes() {
+			String path = Paths.get("text", "simple").toString();
+			String query = Paths.get("query", "does-not-exist.txt").toString();
+			String[] args = { "-path", path, "-complete", query };
+			assertTimeout(Duration.ofSeconds(30), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+
+		@Test
+		public void testInvalidTop() {
+			String path = Paths.get("text", "simple").toString();
+			String query = Paths.get("query", "prefixes.txt").toString();
+			String[] args = { "-path", path, "-complete", query, "-top", "fox" };
+			assertTimeout(Duration.ofSeconds(30), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+
+		@Test
+		public void testNoIndex() {
+			String query = Paths.get("query", "prefixes.txt").toString();
+			String[] args = { "-complete", query, "-completions" };
+			assertTimeout(Duration.ofSeconds(30), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+	}
+
+	/**
+	 * Writes every prefix of every stem in the query file, one prefix per line,
+	 * as if every stem were typed one keystroke at a time.
+	 *
+	 * @param stems  query file with one stem per line
+	 * @param output prefix file to write
+	 * @return number of prefixes written
+	 * @throws IOException if unable to read or write the files
+	 */
+	public static int writeKeystrokes(Path stems, Path output) throws IOException {
+		List<String> lines = Files.readAllLines(stems, StandardCharsets.UTF_8);
+		int count = 0;
+
+		try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+			for (String stem : lines) {
+				for (int i = 1; i <= stem.length(); i++) {
+					writer.write(stem, 0, i);
+					writer.newLine();
+					count++;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	@Test
+	public void testCompletionLatency() throws IOException {
+		Path stems = TestUtilities.ACTUAL_PATH.resolve("query-guten-stems.txt");
+		Path keystrokes = TestUtilities.ACTUAL_PATH.resolve("query-guten-keystrokes.txt");
+		Path actual = TestUtilities.ACTUAL_PATH.resolve("completions-keystrokes.json");
+
+		BenchmarkTest.writeStems(Paths.get("text", "gutenberg"), stems);
+		int prefixes = writeKeystrokes(stems, keystrokes);
+
+		String path = Paths.get("text", "gutenberg").toString();
+
+		String[] args1 = { "-path", path };
+		String[] args2 = { "-path", path, "-complete", keystrokes.toString(), "-completions", actual.toString() };
+
+		double indexAverage = TestUtilities.average(args1);
+		double completeAverage = TestUtilities.average(args2) - indexAverage;
+
+		System.out.println();
+		System.out.printf("Completion Benchmark (%d prefixes):%n", prefixes);
+		System.out.printf("   Index: %10.6f s%n", indexAverage / 1000000000.0);
+		System.out.printf("Complete: %10.6f s (excluding index, including output)%n", completeAverage / 1000000000.0);
+		System.out.printf(" Latency: %10.3f us per prefix%n%n", completeAverage / 1000.0 / prefixes);
+	}
+}
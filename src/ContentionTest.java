@@ -0,0 +1,221 @@
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+/*
+ * Tests the thread-safe index variants. When the -lock flag is provided, the
+ * Driver should use the thread-safe index variant given by the flag value:
+ *
+ *   coarse    one read/write lock for the entire index (the default)
+ *   striped   independent locks for each word (for example, a lock-striped
+ *             map or a ConcurrentSkipListMap), so threads adding different
+ *             words do not wait on each other
+ *
+ * Both variants must keep words in sorted order, and must produce exactly the
+ * same output as the single-threaded index. When the -stats flag is also
+ * provided, the statistics object of each of the LOCK_OPERATIONS stages should
+ * include the total nanoseconds spent waiting for index locks in that stage
+ * as a "lockWait" number, for example:
+ *
+ *   "insert": { ..., "lockWait": 123456 }
+ *
+ * The runtime test is not part of any project test group. You have to run it
+ * separately, ideally on a machine with many cores.
+ *
+ * TURN OFF LOGGING BEFORE RUNNING THIS BENCHMARK!
+ */
+public class ContentionTest {
+
+	/** Thread-safe index variants supported by the -lock flag. */
+	public static final String[] VARIANTS = { "coarse", "striped" };
+
+	/** Index operations that must report lock wait time. */
+	public static final String[] LOCK_OPERATIONS = { "insert", "search", "write" };
+
+	/** Thread counts to test each variant with. */
+	public static final int[] THREADS = { 1, 2, 4, 8, 16, 32 };
+
+	public static final Duration TIMEOUT = Duration.ofMinutes(1);
+
+	public static class ConsistencyTest {
+
+		@TestFactory
+		public Stream<DynamicTest> testIndex() {
+			return Stream.of(VARIANTS).flatMap(variant -> IntStream.of(THREADS).mapToObj(threads -> dynamicTest(
+					variant + " (" + threads + " threads)", () -> {
+				String filename = "index-text-all.json";
+				Path actual = TestUtilities.ACTUAL_PATH.resolve("index-text-" + variant + ".json");
+				Path expected = TestUtilities.EXPECTED_PATH.resolve("index-text").resolve(filename);
+
+				String[] args = {
+						"-path", Paths.get("text").toString(),
+						"-index", actual.toString(),
+						"-threads", Integer.toString(threads),
+						"-lock", variant
+				};
+
+				assertTimeout(TIMEOUT, () -> {
+					TestUtilities.checkOutput(expected, actual, args);
+				});
+			})));
+		}
+
+		@TestFactory
+		public Stream<DynamicTest> testSearch() {
+			return Stream.of(VARIANTS).flatMap(variant -> IntStream.of(THREADS).mapToObj(threads -> dynamicTest(
+					variant + " (" + threads + " threads)", () -> {
+				String filename = "results-text-letters-all.json";
+				Path actual = TestUtilities.ACTUAL_PATH.resolve("results-text-letters-" + variant + ".json");
+				Path expected = TestUtilities.EXPECTED_PATH.resolve("results-text-partial").resolve(filename);
+
+				String[] args = {
+						"-path", Paths.get("text").toString(),
+						"-search", Paths.get("query", "letters.txt").toString(),
+						"-results", actual.toString(),
+						"-threads", Integer.toString(threads),
+						"-lock", variant
+				};
+
+				assertTimeout(TIMEOUT, () -> {
+					TestUtilities.checkOutput(expected, actual, args);
+				});
+			})));
+		}
+	}
+
+	@Nested
+	public class NestedConsistencyTest extends ConsistencyTest {
+		// Placeholder for nesting tests
+	}
+
+	/**
+	 * Returns the lock wait time reported inside the statistics object of an
+	 * operation, or -1 if that object has no numeric lock wait entry of its own.
+	 *
+	 * @param json      the statistics output
+	 * @param operation the operation (stage) name
+	 * @return the lock wait time, or -1 if not found
+	 */
+	public static long lockWait(String json, String operation) {
+		// the object of the operation, up to its first nested object or end
+		Pattern pattern = Pattern.compile(
+				"\"" + Pattern.quote(operation) + "\"\\s*:\\s*\\{[^{}]*?\"lockWait\"\\s*:\\s*(\\d+)[^{}]*}");
+		Matcher matcher = pattern.matcher(json);
+		return matcher.find() ? Long.parseLong(matcher.group(1)) : -1;
+	}
+
+	@Nested
+	public class MetricsTest {
+
+		@TestFactory
+		public Stream<DynamicTest> testLockWait() {
+			return Stream.of(VARIANTS).map(variant -> dynamicTest(variant, () -> {
+				Path stats = TestUtilities.ACTUAL_PATH.resolve("stats-lock-" + variant + ".json");
+				Path results = TestUtilities.ACTUAL_PATH.resolve("results-lock-" + variant + ".json");
+				Path index = TestUtilities.ACTUAL_PATH.resolve("index-lock-" + variant + ".json");
+
+				String[] args = {
+						"-path", Paths.get("text", "simple").toString(),
+						"-search", Paths.get("query", "simple.txt").toString(),
+						"-results", results.toString(),
+						"-index", index.toString(),
+						"-threads", "5",
+						"-lock", variant,
+						"-stats", stats.toString()
+				};
+
+				Files.deleteIfExists(stats);
+
+				assertTimeout(TIMEOUT, () -> {
+					TestUtilities.checkExceptions(args);
+				});
+
+				assertTrue(Files.isReadable(stats), "Unable to read statistics file.");
+				String json = new String(Files.readAllBytes(stats), StandardCharsets.UTF_8);
+
+				for (String operation : LOCK_OPERATIONS) {
+					assertTrue(lockWait(json, operation) >= 0, "Missing lock wait for operation: " + operation);
+				}
+			}));
+		}
+	}
+
+	@Nested
+	public class ExceptionsTest {
+
+		@Test
+		public void testInvalidVariant() {
+			String path = Paths.get("text", "simple").toString();
+			String[] args = { "-path", path, "-threads", "5", "-lock", "fox" };
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+
+		@Test
+		public void testMissingVariant() {
+			String path = Paths.get("text", "simple").toString();
+			String[] args = { "-path", path, "-threads", "5", "-lock" };
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+
+		@Test
+		public void testSingleThread() {
+			String path = Paths.get("text", "simple").toString();
+			String[] args = { "-path", path, "-lock", "striped" };
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+	}
+
+	@Test
+	public void testContentionRuntime() {
+		double[][] averages = new double[VARIANTS.length][THREADS.length];
+
+		for (int v = 0; v < VARIANTS.length; v++) {
+			for (int t = 0; t < THREADS.length; t++) {
+				String[] args = {
+						"-path", Paths.get("text").toString(),
+						"-threads", Integer.toString(THREADS[t]),
+						"-lock", VARIANTS[v]
+				};
+
+				averages[v][t] = TestUtilities.average(args) / 1000000000.0;
+			}
+		}
+
+		// speedup is relative to the single-threaded coarse index
+		double baseline = averages[0][0];
+
+		System.out.println();
+		System.out.printf("Contention Benchmark (%d cores):%n", Runtime.getRuntime().availableProcessors());
+		System.out.printf("%-8s    %7s    %10s    %8s%n", "Variant", "Threads", "Seconds", "Speedup");
+
+		for (int v = 0; v < VARIANTS.length; v++) {
+			for (int t = 0; t < THREADS.length; t++) {
+				System.out.printf("%-8s    %7d    %10.6f    %8.4f%n",
+						VARIANTS[v], THREADS[t], averages[v][t], baseline / averages[v][t]);
+			}
+		}
+
+		System.out.println();
+	}
+}
@@ -0,0 +1,307 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/*
+ * Generates synthetic text corpora and query files that are much larger than
+ * the provided text/ directory. The output is deterministic: the same seed
+ * and settings always produce the exact same files, so runtimes measured on
+ * different machines are comparable.
+ *
+ * Words are drawn from a Zipf distribution over a generated vocabulary, so a
+ * handful of words appear very often and most words appear rarely, similar to
+ * natural language. Files are spread across nested (and hidden) directories
+ * and use the same mixed-case extensions found in text/simple.
+ */
+public class CorpusGenerator {
+
+	/** Extensions that should all be treated as text files. */
+	public static final String[] EXTENSIONS = {
+			".txt", ".text", ".TXT", ".tExT", ".teXt"
+	};
+
+	/** Directory names used to build nested subdirectories. */
+	public static final String[] DIRECTORIES = { "a", "b", "c", "d", ".txt" };
+
+	// syllables used to build vocabulary words
+	private static final String[] SYLLABLES = {
+			"ba", "ce", "di", "fo", "gu", "ha", "je", "ki", "lo", "mu",
+			"na", "pe", "qui", "ro", "su", "ta", "ve", "wi", "xo", "yu", "za"
+	};
+
+	// symbols that cleaning should remove from words
+	private static final String[] SYMBOLS = { "", "", "", "", ",", ".", "!", "?", "-", "\"" };
+
+	/** Name of the marker file written once a corpus is complete. */
+	public static final String MARKER = "corpus.complete";
+
+	private final long seed;
+	private final int vocabulary;
+	private final double[] cumulative;
+
+	/**
+	 * Initializes a generator with a Zipf distribution over a vocabulary.
+	 *
+	 * @param seed       random seed used for all generated output
+	 * @param vocabulary number of distinct words
+	 * @param skew       Zipf exponent (1.0 is typical for natural language)
+	 */
+	public CorpusGenerator(long seed, int vocabulary, double skew) {
+		this.seed = seed;
+		this.vocabulary = vocabulary;
+		this.cumulative = new double[vocabulary];
+
+		double total = 0;
+		for (int i = 0; i < vocabulary; i++) {
+			total += 1.0 / Math.pow(i + 1, skew);
+			cumulative[i] = total;
+		}
+
+		for (int i = 0; i < vocabulary; i++) {
+			cumulative[i] /= total;
+		}
+	}
+
+	/**
+	 * Initializes a generator with a default seed, vocabulary, and skew.
+	 */
+	public CorpusGenerator() {
+		this(212, 50000, 1.0);
+	}
+
+	/**
+	 * Returns the word with the given frequency rank. Lower ranks are more
+	 * frequent. Every rank maps to a distinct lowercase word.
+	 *
+	 * @param rank the frequency rank of the word
+	 * @return word with that rank
+	 */
+	public String word(int rank) {
+		StringBuilder builder = new StringBuilder();
+		int remaining = rank;
+
+		do {
+			builder.append(SYLLABLES[remaining % SYLLABLES.length]);
+			remaining = remaining / SYLLABLES.length;
+		} while (remaining > 0);
+
+		return builder.toString();
+	}
+
+	/**
+	 * Returns a random frequency rank following the Zipf distribution.
+	 *
+	 * @param random source of randomness
+	 * @return random rank from 0 (inclusive) to vocabulary size (exclusive)
+	 */
+	public int nextRank(Random random) {
+		double target = random.nextDouble();
+		int low = 0;
+		int high = vocabulary - 1;
+
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (cumulative[middle] < target) {
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+
+	/**
+	 * Returns the relative path for a generated file. Files are spread across
+	 * nested directories up to 4 levels deep, including hidden directories.
+	 *
+	 * @param index the file number
+	 * @return relative path of the file
+	 */
+	public String filename(int index) {
+		StringBuilder builder = new StringBuilder();
+		int remaining = index;
+		int depth = index % 5;
+
+		for (int i = 0; i < depth; i++) {
+			builder.append(DIRECTORIES[remaining % DIRECTORIES.length]);
+			builder.append('/');
+			remaining = remaining / DIRECTORIES.length;
+		}
+
+		builder.append(String.format("file%06d", index));
+		builder.append(EXTENSIONS[(index + index / 5) % EXTENSIONS.length]);
+		return builder.toString();
+	}
+
+	/**
+	 * Generates a corpus of text files with approximately the total size
+	 * requested. Individual file sizes vary between half and one and a half
+	 * times the average size. If the corpus was already completely generated
+	 * into the same directory, nothing is written.
+	 *
+	 * @param root  directory to generate the corpus into
+	 * @param files number of files to generate
+	 * @param bytes approximate total size of the corpus in bytes
+	 * @throws IOException if unable to write the corpus
+	 */
+	public void generateCorpus(Path root, int files, long bytes) throws IOException {
+		Path marker = root.resolve(MARKER);
+
+		if (Files.exists(marker)) {
+			return;
+		}
+
+		Random random = new Random(seed);
+		long average = bytes / files;
+
+		for (int i = 0; i < files; i++) {
+			Path file = root.resolve(filename(i));
+			long size = average / 2 + (long) (random.nextDouble() * average);
+
+			Files.createDirectories(file.getParent());
+			generateFile(file, size, random);
+		}
+
+		Files.write(marker, String.format("%d %d %d%n", seed, files, bytes)
+				.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Generates a directory tree with many small text files, where each file
+	 * contains between 1 and 10 words. This is useful to test directory
+	 * traversal, since traversal dominates the time needed to index the tree.
+	 * If the tree was already completely generated into the same directory,
+	 * nothing is written.
+	 *
+	 * @param root  directory to generate the tree into
+	 * @param files number of files to generate
+	 * @return map from each generated file to its number of words
+	 * @throws IOException if unable to write the tree
+	 */
+	public SortedMap<String, Integer> generateTree(Path root, int files) throws IOException {
+		SortedMap<String, Integer> counts = new TreeMap<>();
+		Path marker = root.resolve(MARKER);
+		boolean complete = Files.exists(marker);
+
+		for (int i = 0; i < files; i++) {
+			Path file = root.resolve(filename(i));
+			int words = i % 10 + 1;
+
+			if (!complete) {
+				StringBuilder builder = new StringBuilder();
+
+				for (int j = 0; j < words; j++) {
+					builder.append(word(i + j));
+					builder.append(j % 5 == 4 ? '\n' : ' ');
+				}
+
+				Files.createDirectories(file.getParent());
+				Files.write(file, builder.toString().getBytes(StandardCharsets.UTF_8));
+			}
+
+			counts.put(file.toString().replace(File.separatorChar, '/'), words);
+		}
+
+		if (!complete) {
+			Files.write(marker, String.format("%d %d%n", seed, files)
+					.getBytes(StandardCharsets.UTF_8));
+		}
+
+		return counts;
+	}
+
+	/**
+	 * Generates a single text file of approximately the size requested.
+	 *
+	 * @param file   file to generate
+	 * @param size   approximate size of the file in bytes
+	 * @param random source of randomness
+	 * @throws IOException if unable to write the file
+	 */
+	public void generateFile(Path file, long size, Random random) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			long written = 0;
+			int column = 0;
+
+			while (written < size) {
+				String word = word(nextRank(random));
+
+				// occasionally capitalize words and add symbols to exercise cleaning
+				if (random.nextInt(10) == 0) {
+					word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+				}
+
+				word = word + SYMBOLS[random.nextInt(SYMBOLS.length)];
+
+				if (column > 0 && column + word.length() > 72) {
+					writer.newLine();
+					written += 1;
+					column = 0;
+				}
+				else if (column > 0) {
+					writer.write(' ');
+					written += 1;
+					column += 1;
+				}
+
+				writer.write(word);
+				written += word.length();
+				column += word.length();
+			}
+
+			writer.newLine();
+		}
+	}
+
+	/**
+	 * Generates a query file drawing words from the same distribution as the
+	 * corpus. Some words are truncated to prefixes to exercise partial search,
+	 * and some are mixed case or contain symbols to exercise cleaning.
+	 *
+	 * @param file  query file to generate
+	 * @param lines number of query lines
+	 * @throws IOException if unable to write the query file
+	 */
+	public void generateQueries(Path file, int lines) throws IOException {
+		Random random = new Random(seed + 1);
+
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			for (int i = 0; i < lines; i++) {
+				int words = 1 + random.nextInt(4);
+
+				for (int j = 0; j < words; j++) {
+					String word = word(nextRank(random));
+
+					if (random.nextInt(4) == 0) {
+						word = word.substring(0, 1 + random.nextInt(word.length()));
+					}
+
+					if (random.nextInt(5) == 0) {
+						word = word.toUpperCase() + SYMBOLS[random.nextInt(SYMBOLS.length)];
+					}
+
+					if (j > 0) {
+						writer.write(' ');
+					}
+
+					writer.write(word);
+				}
+
+				writer.newLine();
+			}
+		}
+	}
+}
@@ -201,6 +201,75 @@ public class CrawlTest {
 		}
 	}
 
+	@Nested
+	public class VirtualLocationTest extends LocationTest {
+
+		@Override
+		public void test(String name, String url, int limit) {
+			String filename = String.format("location-url-%s.json", name);
+			Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+			Path expected = TestUtilities.EXPECTED_PATH.resolve("location-url").resolve(filename);
+
+			String[] args = {
+				"-url", url,
+				"-limit", Integer.toString(limit),
+				"-locations", actual.toString(),
+				"-threads", "virtual"
+			};
+
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkOutput(expected, actual, args);
+			});
+		}
+	}
+
+	@Nested
+	public class VirtualIndexTest extends IndexTest {
+
+		@Override
+		public void test(String name, String url, int limit) {
+			String filename = String.format("index-url-%s.json", name);
+			Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+			Path expected = TestUtilities.EXPECTED_PATH.resolve("index-url").resolve(filename);
+
+			String[] args = {
+				"-url", url,
+				"-limit", Integer.toString(limit),
+				"-index", actual.toString(),
+				"-threads", "virtual"
+			};
+
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkOutput(expected, actual, args);
+			});
+		}
+	}
+
+	@Nested
+	public class VirtualSearchTest extends PartialSearchTest {
+
+		@Override
+		public void test(String name, String url, int limit, String queries) {
+			String filename = String.format("results-url-%s.json", name);
+
+			Path query = Paths.get("query", queries);
+			Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+			Path expected = TestUtilities.EXPECTED_PATH.resolve("results-url-partial").resolve(filename);
+
+			String[] args = {
+				"-url", url,
+				"-limit", Integer.toString(limit),
+				"-search", query.toString(),
+				"-results", actual.toString(),
+				"-threads", "virtual"
+			};
+
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkOutput(expected, actual, args);
+			});
+		}
+	}
+
 	@Nested
 	public class ExceptionTest {
 
@@ -0,0 +1,318 @@
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/*
+ * Tests how the crawler handles misbehaving servers, using a local server
+ * instead of the network. The crawler should:
+ *
+ *   - follow at most 3 redirects by default (or the number given by the
+ *     -redirects flag), recording the page under the original link
+ *   - skip redirect loops, missing pages, and server errors
+ *   - only read 200 OK responses with a text/html content type
+ *   - stop reading a response body after MAX_BYTES bytes (or the number of
+ *     bytes given by the -maxbytes flag) and skip that page, so the memory
+ *     used never depends on how large the response is
+ *   - stop reading a response that takes longer than READ_DEADLINE in total
+ *     and skip that page, even if every single read returns in time
+ *
+ * The memory tests fetch the huge page in a separate JVM with a maximum heap
+ * of BASE_HEAP plus HEAP_FACTOR times the maximum body size, and fail if that
+ * JVM runs out of memory.
+ *
+ * This test is not part of any project test group. You have to run it
+ * separately.
+ */
+public class FetchTest {
+
+	public static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+	private static final long MEGABYTE = 1024 * 1024;
+
+	/** Default maximum number of body bytes read from a single response. */
+	public static final long MAX_BYTES = 1 * MEGABYTE;
+
+	/** Maximum time to read a single response, from request to last byte. */
+	public static final Duration READ_DEADLINE = Duration.ofSeconds(10);
+
+	/** Maximum heap of a JVM that fetches a single tiny page. */
+	public static final long BASE_HEAP = 64 * MEGABYTE;
+
+	/** Extra heap allowed while fetching, as a multiple of the maximum body size. */
+	public static final long HEAP_FACTOR = 4;
+
+	// larger than any reasonable page, and larger than the heap many students use
+	private static final long HUGE = 256 * MEGABYTE;
+
+	private static TestServer server;
+
+	/**
+	 * Starts the local server with a start page that links to every kind of
+	 * misbehaving page.
+	 *
+	 * @throws IOException if unable to start the server
+	 */
+	@BeforeAll
+	public static void startServer() throws IOException {
+		server = new TestServer();
+
+		server.addPage("/hello.html", "<html><body><p>hello world</p></body></html>");
+		server.addPage("/start.html", String.join("\n",
+				"<html><body><p>start</p>",
+				"<a href=\"hop1\"></a>",
+				"<a href=\"hop3\"></a>",
+				"<a href=\"hop5\"></a>",
+				"<a href=\"loop-a\"></a>",
+				"<a href=\"gone\"></a>",
+				"<a href=\"error\"></a>",
+				"<a href=\"image\"></a>",
+				"<a href=\"huge\"></a>",
+				"<a href=\"slow\"></a>",
+				"</body></html>"));
+
+		// redirect chains of different lengths that end at hello.html
+		String target = server.url("/hello.html").toString();
+		for (int i = 1; i <= 5; i++) {
+			server.addRedirect("/hop" + i, target);
+			target = server.url("/hop" + i).toString();
+		}
+
+		// redirect loop
+		server.addRedirect("/loop-a", server.url("/loop-b").toString());
+		server.addRedirect("/loop-b", server.url("/loop-a").toString());
+
+		server.addHandler("/error", exchange -> {
+			TestServer.respond(exchange, 500, "text/html", "<html><body><p>error</p></body></html>");
+		});
+
+		server.addHandler("/image", exchange -> {
+			TestServer.respond(exchange, 200, "image/png", "<html><body><p>image</p></body></html>");
+		});
+
+		server.addHandler("/huge", FetchTest::handleHuge);
+		server.addHandler("/slow", FetchTest::handleSlow);
+	}
+
+	@AfterAll
+	public static void stopServer() {
+		server.close();
+	}
+
+	/**
+	 * Streams a valid but enormous HTML page, until the client stops reading.
+	 *
+	 * @param exchange the request and response
+	 * @throws IOException if unable to respond
+	 */
+	private static void handleHuge(HttpExchange exchange) throws IOException {
+		byte[] chunk = "<p>huge huge huge huge huge huge huge huge</p>\n".getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/html");
+		exchange.sendResponseHeaders(200, 0);
+
+		try (OutputStream output = exchange.getResponseBody()) {
+			output.write("<html><body>\n".getBytes(StandardCharsets.UTF_8));
+
+			for (long sent = 0; sent < HUGE; sent += chunk.length) {
+				output.write(chunk);
+			}
+
+			output.write("</body></html>\n".getBytes(StandardCharsets.UTF_8));
+		}
+		catch (IOException e) {
+			// client stopped reading, which is expected
+		}
+	}
+
+	/**
+	 * Sends a valid HTML page one byte at a time, very slowly.
+	 *
+	 * @param exchange the request and response
+	 * @throws IOException if unable to respond
+	 */
+	private static void handleSlow(HttpExchange exchange) throws IOException {
+		byte[] html = "<html><body><p>slow slow slow slow slow slow</p></body></html>\n".getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/html");
+		exchange.sendResponseHeaders(200, html.length);
+
+		try (OutputStream output = exchange.getResponseBody()) {
+			for (byte b : html) {
+				output.write(b);
+				output.flush();
+				Thread.sleep(2000);
+			}
+		}
+		catch (IOException e) {
+			// client stopped reading, which is expected
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Writes the expected locations output for the start page, including
+	 * redirect chains up to the number of redirects provided.
+	 *
+	 * @param redirects maximum number of redirects to follow
+	 * @param path      file to write to
+	 * @throws IOException if unable to write the file
+	 */
+	public static void writeExpected(int redirects, Path path) throws IOException {
+		SortedMap<String, Integer> counts = new TreeMap<>();
+		counts.put(server.url("/start.html").toString(), 1);
+
+		// the start page links to chains of 1, 3, and 5 redirects
+		for (int hops : new int[] { 1, 3, 5 }) {
+			if (hops <= redirects) {
+				counts.put(server.url("/hop" + hops).toString(), 2);
+			}
+		}
+
+		TestUtilities.writeLocations(counts, path);
+	}
+
+	@Nested
+	public class LocationTest {
+
+		public void test(String name, int redirects, String[] args) throws IOException {
+			Path actual = TestUtilities.ACTUAL_PATH.resolve("location-fetch-" + name + ".json");
+			Path expected = TestUtilities.ACTUAL_PATH.resolve("expected-location-fetch-" + name + ".json");
+			writeExpected(redirects, expected);
+
+			String[] all = new String[args.length + 2];
+			System.arraycopy(args, 0, all, 0, args.length);
+			all[args.length] = "-locations";
+			all[args.length + 1] = actual.toString();
+
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkOutput(expected, actual, all);
+			});
+		}
+
+		@Test
+		public void testDefaultRedirects() throws IOException {
+			String[] args = { "-url", server.url("/start.html").toString(), "-limit", "20" };
+			test("default", 3, args);
+		}
+
+		@Test
+		public void testMoreRedirects() throws IOException {
+			String[] args = { "-url", server.url("/start.html").toString(), "-limit", "20", "-redirects", "5" };
+			test("redirects", 5, args);
+		}
+
+		@Test
+		public void testNoRedirects() throws IOException {
+			String[] args = { "-url", server.url("/start.html").toString(), "-limit", "20", "-redirects", "0" };
+			test("none", 0, args);
+		}
+
+		@Test
+		public void testThreads() throws IOException {
+			String[] args = { "-url", server.url("/start.html").toString(), "-limit", "20", "-threads", "5" };
+			test("threads", 3, args);
+		}
+	}
+
+	@Nested
+	public class ExceptionTest {
+
+		@Test
+		public void testLoop() {
+			String[] args = { "-url", server.url("/loop-a").toString(), "-limit", "1" };
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+
+		@Test
+		public void testImage() {
+			String[] args = { "-url", server.url("/image").toString(), "-limit", "1" };
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+
+		@Test
+		public void testSlow() {
+			String[] args = { "-url", server.url("/slow").toString(), "-limit", "1" };
+
+			// the slow page takes minutes to send, but each byte arrives in 2 seconds
+			assertTimeout(READ_DEADLINE.plusSeconds(5), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+
+		/**
+		 * Fetches a tiny page and then the huge page, each in a fresh JVM whose
+		 * maximum heap is BASE_HEAP plus HEAP_FACTOR times the maximum body
+		 * size. Fails if either JVM exits with an error, for example because it
+		 * ran out of memory.
+		 *
+		 * @param max   maximum body size the crawler should read
+		 * @param extra extra arguments to pass to {@link Driver}
+		 * @throws IOException          if unable to start the JVM
+		 * @throws InterruptedException if interrupted while waiting
+		 */
+		public void fetch(long max, String... extra) throws IOException, InterruptedException {
+			String flags = String.format("-Xmx%dm", (BASE_HEAP + HEAP_FACTOR * max) / MEGABYTE);
+
+			String[] tiny = new String[extra.length + 4];
+			String[] huge = new String[extra.length + 4];
+
+			tiny[0] = huge[0] = "-url";
+			tiny[1] = server.url("/hello.html").toString();
+			huge[1] = server.url("/huge").toString();
+			tiny[2] = huge[2] = "-limit";
+			tiny[3] = huge[3] = "1";
+			System.arraycopy(extra, 0, tiny, 4, extra.length);
+			System.arraycopy(extra, 0, huge, 4, extra.length);
+
+			// the same heap must be enough for a tiny page, or the huge page proves nothing
+			TestUtilities.fork(flags, "ScalingTest", tiny, TIMEOUT);
+
+			// reading much more than the limit runs out of memory in this heap
+			TestUtilities.fork(flags, "ScalingTest", huge, TIMEOUT);
+		}
+
+		@Test
+		public void testHuge() throws IOException, InterruptedException {
+			fetch(MAX_BYTES);
+		}
+
+		@Test
+		public void testMaxBytes() throws IOException, InterruptedException {
+			long max = 16 * MEGABYTE;
+			fetch(max, "-maxbytes", Long.toString(max));
+		}
+
+		@Test
+		public void testInvalidMaxBytes() {
+			String[] args = { "-url", server.url("/hello.html").toString(), "-limit", "1", "-maxbytes", "fox" };
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+
+		@Test
+		public void testInvalidRedirects() {
+			String[] args = { "-url", server.url("/hop1").toString(), "-limit", "1", "-redirects", "fox" };
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+	}
+}
@@ -0,0 +1,184 @@
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Runs the StressTest runtime benchmarks with every trial in a fresh JVM with
+ * fixed heap and garbage collector settings, so earlier tests in the same
+ * JUnit run cannot change the results. Each trial warms up until its runtimes
+ * are stable (see Trial), and the single and multithreaded results are
+ * reported as the mean of all trials with a 95% confidence interval, along
+ * with the number of warmup runs each trial needed.
+ *
+ * The JVM flags used for every trial can be changed with the fork.flags
+ * system property, for example:
+ *
+ *   -Dfork.flags="-Xms2g -Xmx2g -XX:+UseParallelGC"
+ *
+ * This test is not part of any project test group. You have to run it
+ * separately.
+ *
+ * TURN OFF LOGGING BEFORE RUNNING THIS BENCHMARK!
+ */
+public class ForkTest {
+
+	/** JVM flags used for every trial, unless the fork.flags property is set. */
+	public static final String FLAGS = "-Xms1g -Xmx1g -XX:+UseG1GC -XX:+AlwaysPreTouch";
+
+	/** Number of trials (forked JVMs) per configuration. */
+	public static final int TRIALS = Integer.getInteger("fork.trials", 10);
+
+	private static final int THREADS = 5;
+
+	// timeout PER TRIAL (not for all trials)
+	private static final Duration TIMEOUT = Duration.ofMinutes(10);
+
+	// two-sided 95% critical values of the t distribution for 1 to 30 degrees of freedom
+	private static final double[] T95 = {
+			12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+			2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+			2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+	};
+
+	/**
+	 * Runs one trial in a fresh JVM and returns the number of warmup runs it
+	 * needed and the average of its timed runs.
+	 *
+	 * @param args arguments to pass to {@link Driver}
+	 * @return number of warmup runs and average runtime of the timed runs in
+	 *         nanoseconds (in that order)
+	 * @throws IOException          if unable to start the JVM or read its results
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public static double[] fork(String[] args) throws IOException, InterruptedException {
+		long[] results = TestUtilities.fork(System.getProperty("fork.flags", FLAGS), "Trial", args, TIMEOUT);
+
+		// first number is the number of warmup runs, the rest are timed runs
+		double total = 0;
+
+		for (int i = 1; i < results.length; i++) {
+			total += results[i];
+		}
+
+		return new double[] { results[0], total / (results.length - 1) };
+	}
+
+	/**
+	 * Returns the mean and half-width of the 95% confidence interval of the
+	 * values.
+	 *
+	 * @param values the values
+	 * @return mean and half-width (in that order)
+	 */
+	public static double[] interval(double[] values) {
+		double mean = Arrays.stream(values).average().orElse(0);
+		double squares = 0;
+
+		for (double value : values) {
+			squares += (value - mean) * (value - mean);
+		}
+
+		int df = values.length - 1;
+
+		if (df < 1) {
+			return new double[] { mean, Double.NaN };
+		}
+
+		double t = df <= T95.length ? T95[df - 1] : 1.96;
+		return new double[] { mean, t * Math.sqrt(squares / df / values.length) };
+	}
+
+	/**
+	 * Runs the single and multithreaded trials alternately, prints a report,
+	 * and returns the confidence intervals of both.
+	 *
+	 * @param title title of the report
+	 * @param args1 arguments for the single threaded runs
+	 * @param args2 arguments for the multithreaded runs
+	 * @return single and multithreaded mean and half-width (in that order)
+	 * @throws IOException          if unable to run a trial
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public static double[][] benchmark(String title, String[] args1, String[] args2)
+			throws IOException, InterruptedException {
+		double[] singleTrials = new double[TRIALS];
+		double[] threadTrials = new double[TRIALS];
+		double[] singleWarmups = new double[TRIALS];
+		double[] threadWarmups = new double[TRIALS];
+
+		for (int i = 0; i < TRIALS; i++) {
+			double[] singleTrial = fork(args1);
+			double[] threadTrial = fork(args2);
+
+			singleWarmups[i] = singleTrial[0];
+			singleTrials[i] = singleTrial[1] / 1000000000.0;
+			threadWarmups[i] = threadTrial[0];
+			threadTrials[i] = threadTrial[1] / 1000000000.0;
+		}
+
+		double[] single = interval(singleTrials);
+		double[] multi = interval(threadTrials);
+
+		// speedup of each pair of trials
+		double[] speedups = new double[TRIALS];
+
+		for (int i = 0; i < TRIALS; i++) {
+			speedups[i] = singleTrials[i] / threadTrials[i];
+		}
+
+		double[] speedup = interval(speedups);
+
+		System.out.println(title);
+		System.out.printf("%-5s    %10s    %6s    %10s    %6s%n", "Trial", "Single", "Warmup", "Multi", "Warmup");
+
+		for (int i = 0; i < TRIALS; i++) {
+			System.out.printf("%-5d    %10.6f    %6d    %10.6f    %6d%n", i + 1,
+					singleTrials[i], (int) singleWarmups[i], threadTrials[i], (int) threadWarmups[i]);
+		}
+
+		double[] singleWarmup = interval(singleWarmups);
+		double[] threadWarmup = interval(threadWarmups);
+
+		// warmups that always hit the maximum mean the runtimes never stabilized
+		System.out.println();
+		System.out.printf("%d Threads: %10.6f s +/- %.6f (%.1f +/- %.1f warmup runs, at most %d)%n",
+				1, single[0], single[1], singleWarmup[0], singleWarmup[1], Trial.MAX_WARM);
+		System.out.printf("%d Threads: %10.6f s +/- %.6f (%.1f +/- %.1f warmup runs, at most %d)%n",
+				THREADS, multi[0], multi[1], threadWarmup[0], threadWarmup[1], Trial.MAX_WARM);
+		System.out.printf("  Speedup: %10.6f +/- %.6f %n%n", speedup[0], speedup[1]);
+
+		return new double[][] { single, multi };
+	}
+
+	@Test
+	public void testIndexRuntime() throws IOException, InterruptedException {
+		String path = Paths.get("text").toString();
+
+		String[] args1 = { "-path", path, "-threads", String.valueOf(1) };
+		String[] args2 = { "-path", path, "-threads", String.valueOf(THREADS) };
+
+		double[][] results = benchmark("Forked Indexing Benchmark:", args1, args2);
+
+		// multithreading must be faster even at the ends of both intervals
+		assertTrue(results[0][0] - results[0][1] > results[1][0] + results[1][1]);
+	}
+
+	@Test
+	public void testSearchRuntime() throws IOException, InterruptedException {
+		String path = Paths.get("text").toString();
+		String query = Paths.get("query", "letters.txt").toString();
+
+		String[] args1 = { "-path", path, "-search", query, "-threads", String.valueOf(1) };
+		String[] args2 = { "-path", path, "-search", query, "-threads", String.valueOf(THREADS) };
+
+		double[][] results = benchmark("Forked Searching Benchmark:", args1, args2);
+
+		// multithreading must be faster even at the ends of both intervals
+		assertTrue(results[0][0] - results[0][1] > results[1][0] + results[1][1]);
+	}
+}
@@ -0,0 +1,221 @@
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+/*
+ * Tests building the index with a memory budget. When the -budget flag is
+ * provided, the Driver should keep at most that many kilobytes of postings in
+ * memory while building the index. Whenever the budget is reached, the
+ * postings in memory should be written to a sorted run file in the spill
+ * directory (given by the -spill flag, or a temporary directory by default).
+ * The run files are then merged into the final -index output, and deleted.
+ * When the -stats flag is also provided, the statistics should include the
+ * number of run files written as a "runs" number under a "spill" key, for
+ * example:
+ *
+ *   "spill": { "runs": 42 }
+ *
+ * The output must be exactly the same as without a budget, no matter how
+ * small the budget is.
+ */
+public class MergeTest {
+
+	public static final Duration TIMEOUT = Duration.ofMinutes(3);
+
+	private static final long MEGABYTE = 1024 * 1024;
+
+	private static final long KILOBYTE = 1024;
+
+	/** Fewest run files text/rfcs must spill with a budget of 1 KB. */
+	public static final long MIN_RUNS = 10;
+
+	/** Budgets in kilobytes, small enough to spill many runs even on text/simple. */
+	public static final String[] BUDGETS = { "1", "4", "16" };
+
+	public static class BudgetOutputTest {
+
+		@TestFactory
+		public Stream<DynamicTest> testSimple() {
+			String[][] tests = {
+					{ "index-text-simple.json", Paths.get("text", "simple").toString() }
+			};
+
+			return generateTests(tests);
+		}
+
+		@TestFactory
+		public Stream<DynamicTest> testRFCs() {
+			String[][] tests = {
+					{ "index-text-rfcs.json", Paths.get("text", "rfcs").toString() }
+			};
+
+			return generateTests(tests);
+		}
+
+		// These tests take awhile. Only run them if you are passing the others!
+		@TestFactory
+		public Stream<DynamicTest> testAll() {
+			String[][] tests = {
+					{ "index-text-all.json", Paths.get("text").toString() }
+			};
+
+			return generateTests(tests);
+		}
+
+		public Stream<DynamicTest> generateTests(String[][] tests) {
+			return Stream.of(tests).flatMap(params -> Stream.of(BUDGETS).map(budget -> dynamicTest(
+					params[0] + " (" + budget + " KB)", () -> {
+				Path actual = TestUtilities.ACTUAL_PATH.resolve(params[0]);
+				Path expected = TestUtilities.EXPECTED_PATH.resolve("index-text").resolve(params[0]);
+
+				String[] args = {
+						"-path", params[1],
+						"-index", actual.toString(),
+						"-budget", budget
+				};
+
+				assertTimeout(TIMEOUT, () -> {
+					TestUtilities.checkOutput(expected, actual, args);
+				});
+			})));
+		}
+	}
+
+	@Nested
+	public class NestedBudgetOutputTest extends BudgetOutputTest {
+		// Placeholder for nesting tests
+	}
+
+	@Nested
+	public class BudgetOutputThreads extends BudgetOutputTest {
+
+		@Override
+		public Stream<DynamicTest> generateTests(String[][] tests) {
+			return Stream.of(tests).flatMap(params -> Stream.of(BUDGETS).map(budget -> dynamicTest(
+					params[0] + " (" + budget + " KB, 5 threads)", () -> {
+				Path actual = TestUtilities.ACTUAL_PATH.resolve(params[0]);
+				Path expected = TestUtilities.EXPECTED_PATH.resolve("index-text").resolve(params[0]);
+
+				String[] args = {
+						"-path", params[1],
+						"-index", actual.toString(),
+						"-budget", budget,
+						"-threads", "5"
+				};
+
+				assertTimeout(TIMEOUT, () -> {
+					TestUtilities.checkOutput(expected, actual, args);
+				});
+			})));
+		}
+	}
+
+	@Nested
+	public class SpillTest {
+
+		@Test
+		public void testCleanup() throws IOException {
+			Path spill = TestUtilities.ACTUAL_PATH.resolve("spill");
+			Path stats = TestUtilities.ACTUAL_PATH.resolve("stats-spill.json");
+			Path actual = TestUtilities.ACTUAL_PATH.resolve("index-text-spill.json");
+			Path expected = TestUtilities.EXPECTED_PATH.resolve("index-text").resolve("index-text-rfcs.json");
+
+			Files.createDirectories(spill);
+			Files.deleteIfExists(stats);
+
+			String[] args = {
+					"-path", Paths.get("text", "rfcs").toString(),
+					"-index", actual.toString(),
+					"-budget", "1",
+					"-spill", spill.toString(),
+					"-stats", stats.toString()
+			};
+
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkOutput(expected, actual, args);
+			});
+
+			// thousands of distinct words never fit in 1 KB, so cleanup has something to clean
+			assertTrue(Files.isReadable(stats), "Unable to read statistics file.");
+			String json = new String(Files.readAllBytes(stats), StandardCharsets.UTF_8);
+			long runs = StatsTest.stat(json, "spill", "runs");
+			assertTrue(runs >= MIN_RUNS, String.format("Only %d run files spilled to %s.", runs, spill));
+
+			try (Stream<Path> files = Files.list(spill)) {
+				assertTrue(files.count() == 0, "Run files were not deleted from " + spill);
+			}
+		}
+
+		@Test
+		public void testPeakHeap() throws IOException {
+			// much smaller than the whole index of the corpus in memory
+			long budget = 8 * MEGABYTE / KILOBYTE;
+
+			Path corpus = ScalingTest.CORPUS_PATH.resolve("100mb");
+			new CorpusGenerator().generateCorpus(corpus, 1000, 100 * MEGABYTE);
+
+			Path actual = TestUtilities.ACTUAL_PATH.resolve("index-corpus-budget.json");
+
+			String[] args1 = { "-path", corpus.toString(), "-index", actual.toString() };
+			String[] args2 = { "-path", corpus.toString(), "-index", actual.toString(), "-budget", Long.toString(budget) };
+
+			TestUtilities.measure(args1);
+			long unbounded = TestUtilities.peakHeap();
+
+			TestUtilities.measure(args2);
+			long bounded = TestUtilities.peakHeap();
+
+			System.out.println();
+			System.out.printf("Budget Benchmark (%d KB budget):%n", budget);
+			System.out.printf("  Unbounded: %6d MB%n", unbounded / MEGABYTE);
+			System.out.printf("    Bounded: %6d MB%n%n", bounded / MEGABYTE);
+
+			assertTrue(bounded < unbounded, "Budget did not lower the peak heap.");
+		}
+	}
+
+	@Nested
+	public class ExceptionsTest {
+
+		@Test
+		public void testInvalidBudget() {
+			String path = Paths.get("text", "simple").toString();
+			String[] args = { "-path", path, "-index", "-budget", "fox" };
+			assertTimeout(Duration.ofSeconds(30), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+
+		@Test
+		public void testZeroBudget() {
+			String path = Paths.get("text", "simple").toString();
+			String[] args = { "-path", path, "-index", "-budget", "0" };
+			assertTimeout(Duration.ofSeconds(30), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+
+		@Test
+		public void testMissingSpill() {
+			String path = Paths.get("text", "simple").toString();
+			Path spill = TestUtilities.ACTUAL_PATH.resolve("does-not-exist").resolve("spill");
+			String[] args = { "-path", path, "-index", "-budget", "1", "-spill", spill.toString() };
+			assertTimeout(Duration.ofSeconds(30), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+	}
+}
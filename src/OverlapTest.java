@@ -0,0 +1,137 @@
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+/*
+ * Tests that crawling and indexing overlap. Crawls a generated site on a local
+ * server that waits before every response, so fetching pages is slow but
+ * indexing them is not. If pages are indexed while other pages are still
+ * being fetched, the total runtime should be close to the fetch time alone.
+ *
+ * This test is not part of any project test group. You have to run it
+ * separately.
+ */
+public class OverlapTest {
+
+	private static final int PAGES = 60;
+
+	private static final int THREADS = 5;
+
+	private static final Duration LATENCY = Duration.ofMillis(200);
+
+	// timeout PER RUN (not for all runs)
+	private static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+	private static TestServer server;
+
+	private static Path expected;
+
+	/**
+	 * Starts the local server with an index page linking to every generated
+	 * page, and writes the expected locations output for the site.
+	 *
+	 * @throws IOException if unable to start the server
+	 */
+	@BeforeAll
+	public static void startServer() throws IOException {
+		server = new TestServer();
+
+		CorpusGenerator generator = new CorpusGenerator();
+		Random random = new Random(212);
+
+		SortedMap<String, Integer> counts = new TreeMap<>();
+		StringBuilder index = new StringBuilder("<html><body><p>index</p>\n");
+		counts.put(server.url("/index.html").toString(), 1);
+
+		for (int i = 0; i < PAGES; i++) {
+			String name = String.format("/page%02d.html", i);
+			int words = 2000 + random.nextInt(3000);
+
+			StringBuilder page = new StringBuilder("<html><body><p>\n");
+
+			for (int j = 0; j < words; j++) {
+				page.append(generator.word(generator.nextRank(random)));
+				page.append(j % 12 == 11 ? '\n' : ' ');
+			}
+
+			page.append("</p></body></html>\n");
+			server.addPage(name, page.toString());
+			counts.put(server.url(name).toString(), words);
+
+			index.append(String.format("<a href=\"%s\"></a>%n", name.substring(1)));
+		}
+
+		index.append("</body></html>\n");
+		server.addPage("/index.html", index.toString());
+
+		expected = TestUtilities.ACTUAL_PATH.resolve("expected-location-overlap.json");
+		TestUtilities.writeLocations(counts, expected);
+	}
+
+	@AfterAll
+	public static void stopServer() {
+		server.close();
+	}
+
+	@TestFactory
+	public Stream<DynamicTest> testLocations() {
+		return Stream.of(1, THREADS).map(threads -> dynamicTest(
+				"overlap (" + threads + " threads)", () -> {
+			Path actual = TestUtilities.ACTUAL_PATH.resolve("location-overlap.json");
+
+			String[] args = {
+					"-url", server.url("/index.html").toString(),
+					"-limit", Integer.toString(PAGES + 1),
+					"-locations", actual.toString(),
+					"-threads", Integer.toString(threads)
+			};
+
+			server.setLatency(LATENCY);
+
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkOutput(expected, actual, args);
+			});
+		}));
+	}
+
+	@Test
+	public void testOverlapRuntime() {
+		String[] args = {
+				"-url", server.url("/index.html").toString(),
+				"-limit", Integer.toString(PAGES + 1),
+				"-threads", Integer.toString(THREADS)
+		};
+
+		// without latency, the runtime is almost entirely spent indexing
+		server.setLatency(Duration.ZERO);
+		TestUtilities.measure(args);
+		double indexOnly = TestUtilities.measure(args) / 1000000000.0;
+
+		// with latency, the pages cannot be fetched faster than this
+		double fetchOnly = Math.ceil((PAGES + 1.0) / THREADS) * LATENCY.toMillis() / 1000.0;
+
+		server.setLatency(LATENCY);
+		double crawl = TestUtilities.measure(args) / 1000000000.0;
+
+		System.out.println();
+		System.out.printf("Overlap Benchmark (%d pages, %d ms latency, %d threads):%n",
+				PAGES + 1, LATENCY.toMillis(), THREADS);
+		System.out.printf("   Index: %10.6f s (no latency)%n", indexOnly);
+		System.out.printf("   Fetch: %10.6f s (lower bound)%n", fetchOnly);
+		System.out.printf("   Crawl: %10.6f s%n", crawl);
+		System.out.printf(" Overlap: %10.6f %n%n", (indexOnly + fetchOnly) / crawl);
+	}
+}
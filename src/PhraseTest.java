@@ -0,0 +1,136 @@
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+/*
+ * Tests positional search. When the -phrase flag is provided, each query line
+ * is either a quoted phrase or a proximity query:
+ *
+ *   "hello world"       locations where the stems appear at consecutive
+ *                       positions, counting every (possibly overlapping)
+ *                       occurrence of the phrase
+ *
+ *   hello NEAR/k world  locations where the stems appear within k positions
+ *                       of each other (in either order), counting every such
+ *                       pair of positions
+ *
+ * The query is cleaned and stemmed as usual, but the order of the stems is
+ * kept. Results are scored and sorted exactly like the other search results.
+ */
+public class PhraseTest {
+
+	public static final Duration TIMEOUT = Duration.ofMinutes(3);
+
+	@Nested
+	public class ExceptionsTest {
+
+		@Test
+		public void testPlainQueries() {
+			String path = Paths.get("text", "simple").toString();
+			String query = Paths.get("query", "simple.txt").toString();
+			String[] args = { "-path", path, "-search", query, "-phrase" };
+			assertTimeout(Duration.ofSeconds(30), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+
+		@Test
+		public void testExactPhrase() {
+			String path = Paths.get("text", "simple").toString();
+			String query = Paths.get("query", "phrase.txt").toString();
+			String[] args = { "-path", path, "-search", query, "-phrase", "-exact" };
+			assertTimeout(Duration.ofSeconds(30), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+	}
+
+	public static class PhraseSearchTest {
+
+		@TestFactory
+		public Stream<DynamicTest> testSimple() {
+			String[][] tests = {
+					{ "phrase-simple", "phrase.txt", Paths.get("text", "simple").toString() }
+			};
+
+			return generateTests(tests);
+		}
+
+		@TestFactory
+		public Stream<DynamicTest> testRFCs() {
+			String[][] tests = {
+					{ "phrase-rfcs", "phrase.txt", Paths.get("text", "rfcs").toString() }
+			};
+
+			return generateTests(tests);
+		}
+
+		// These tests take awhile. Only run them if you are passing the others!
+		@TestFactory
+		public Stream<DynamicTest> testGutenberg() {
+			String[][] tests = {
+					{ "phrase-guten", "phrase.txt", Paths.get("text", "gutenberg").toString() }
+			};
+
+			return generateTests(tests);
+		}
+
+		public Stream<DynamicTest> generateTests(String[][] tests) {
+			return Stream.of(tests).map(params -> dynamicTest(params[0], () -> {
+				String filename = String.format("results-text-%s.json", params[0]);
+				Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+				Path expected = TestUtilities.EXPECTED_PATH.resolve("results-text-phrase").resolve(filename);
+
+				String[] args = {
+						"-path", params[2],
+						"-search", Paths.get("query", params[1]).toString(),
+						"-results", actual.toString(),
+						"-phrase"
+				};
+
+				assertTimeout(TIMEOUT, () -> {
+					TestUtilities.checkOutput(expected, actual, args);
+				});
+			}));
+		}
+	}
+
+	@Nested
+	public class NestedPhraseSearchTest extends PhraseSearchTest {
+		// Placeholder for nesting tests
+	}
+
+	@Nested
+	public class PhraseSearchThreads extends PhraseSearchTest {
+
+		@Override
+		public Stream<DynamicTest> generateTests(String[][] tests) {
+			return Stream.of(tests).map(params -> dynamicTest(params[0] + " (5 threads)", () -> {
+				String filename = String.format("results-text-%s.json", params[0]);
+				Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+				Path expected = TestUtilities.EXPECTED_PATH.resolve("results-text-phrase").resolve(filename);
+
+				String[] args = {
+						"-path", params[2],
+						"-search", Paths.get("query", params[1]).toString(),
+						"-results", actual.toString(),
+						"-phrase",
+						"-threads", "5"
+				};
+
+				assertTimeout(TIMEOUT, () -> {
+					TestUtilities.checkOutput(expected, actual, args);
+				});
+			}));
+		}
+	}
+}
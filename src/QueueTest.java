@@ -0,0 +1,340 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+/*
+ * Tests the work queue under load. The queue should:
+ *
+ *   - accept an optional -queue flag with the maximum number of pending tasks,
+ *     blocking (not failing) when the queue is full
+ *   - wait for pending work to finish without busy-waiting, so the thread
+ *     that waits should use almost no CPU time while the workers are busy
+ *   - pass exceptions thrown by tasks back to the thread that waits for the
+ *     work to finish, instead of losing them or leaving the queue hanging.
+ *     That thread reports each failure on System.err (including the path or
+ *     link that failed), and counts it as a failed task in the statistics
+ *
+ * When the -stats flag is also provided, the statistics should include the
+ * QUEUE_STATS under a "queue" key: the queue capacity, the total number of
+ * tasks, an array with the number of tasks run by each worker, an array
+ * histogram of how long tasks waited in the queue, and the number of tasks
+ * that failed. For example, when indexing text/simple with 5 threads:
+ *
+ *   "queue": { "capacity": 10, "tasks": 13, "workers": [ 3, 4, 2, 2, 2 ],
+ *              "wait": [ 9, 3, 1 ], "failed": 0 }
+ *
+ * Each text file found is one task.
+ *
+ * This test is not part of any project test group. You have to run it
+ * separately.
+ */
+public class QueueTest {
+
+	/** Queue statistics that must be reported in the statistics output. */
+	public static final String[] QUEUE_STATS = { "capacity", "tasks", "workers", "wait", "failed" };
+
+	/** Number of query lines, each of which should become one tiny task. */
+	public static final int TASKS = 1000000;
+
+	public static final Duration TIMEOUT = Duration.ofMinutes(5);
+
+	private static final Path QUERY = TestUtilities.ACTUAL_PATH.resolve("query-million.txt");
+
+	private static final Path EXPECTED = TestUtilities.ACTUAL_PATH.resolve("expected-results-million.json");
+
+	/**
+	 * Generates the query file with one million lines, and the expected results
+	 * for that query file from a single-threaded run.
+	 *
+	 * @throws IOException if unable to generate the query file
+	 */
+	@BeforeAll
+	public static void generateQueries() throws IOException {
+		new CorpusGenerator().generateQueries(QUERY, TASKS);
+
+		String[] args = {
+				"-path", Paths.get("text", "simple").toString(),
+				"-search", QUERY.toString(),
+				"-results", EXPECTED.toString()
+		};
+
+		assertTimeout(TIMEOUT, () -> {
+			TestUtilities.checkExceptions(args);
+		});
+	}
+
+	@TestFactory
+	public Stream<DynamicTest> testMillionTasks() {
+		String[][] tests = {
+				{ "5 threads", "5", null },
+				{ "32 threads", "32", null },
+				{ "5 threads, capacity 1", "5", "1" },
+				{ "5 threads, capacity 100", "5", "100" },
+				{ "32 threads, capacity 10", "32", "10" }
+		};
+
+		return Stream.of(tests).map(params -> dynamicTest(params[0], () -> {
+			Path actual = TestUtilities.ACTUAL_PATH.resolve("results-million.json");
+
+			String[] args = params[2] == null ? new String[] {
+					"-path", Paths.get("text", "simple").toString(),
+					"-search", QUERY.toString(),
+					"-results", actual.toString(),
+					"-threads", params[1]
+			} : new String[] {
+					"-path", Paths.get("text", "simple").toString(),
+					"-search", QUERY.toString(),
+					"-results", actual.toString(),
+					"-threads", params[1],
+					"-queue", params[2]
+			};
+
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkOutput(EXPECTED, actual, args);
+			});
+		}));
+	}
+
+	@Test
+	public void testNoBusyWait() throws IOException {
+		int threads = 5;
+		int pages = 30;
+		Duration latency = Duration.ofMillis(200);
+
+		// slow pages keep the workers waiting, so the main thread has nothing to do
+		try (TestServer server = new TestServer()) {
+			StringBuilder index = new StringBuilder("<html><body><p>index</p>\n");
+
+			for (int i = 0; i < pages; i++) {
+				String name = String.format("/page%02d.html", i);
+				server.addPage(name, "<html><body><p>page " + i + "</p></body></html>");
+				index.append(String.format("<a href=\"%s\"></a>%n", name.substring(1)));
+			}
+
+			index.append("</body></html>\n");
+			server.addPage("/index.html", index.toString());
+			server.setLatency(latency);
+
+			String[] args = {
+					"-url", server.url("/index.html").toString(),
+					"-limit", Integer.toString(pages + 1),
+					"-threads", Integer.toString(threads),
+					"-queue", "10"
+			};
+
+			// only the CPU time of this thread, which waits in finish()
+			ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			long cpuStart = bean.getCurrentThreadCpuTime();
+			long wall = TestUtilities.measure(args);
+			long cpu = bean.getCurrentThreadCpuTime() - cpuStart;
+
+			System.out.println();
+			System.out.printf("Queue Wait Benchmark (%d pages, %d ms latency, %d threads):%n",
+					pages + 1, latency.toMillis(), threads);
+			System.out.printf("   Wall: %10.6f s%n", wall / 1000000000.0);
+			System.out.printf("    CPU: %10.6f s (main thread)%n", cpu / 1000000000.0);
+			System.out.printf("  Ratio: %10.6f %n%n", (double) cpu / wall);
+
+			// a spinning finish() keeps this thread busy for the whole run
+			assertTrue(cpu < wall / 4, "Too much CPU time in the waiting thread, possibly busy-waiting.");
+		}
+	}
+
+	@Nested
+	public class MetricsTest {
+
+		@Test
+		public void testQueueStats() throws IOException {
+			Path stats = TestUtilities.ACTUAL_PATH.resolve("stats-queue.json");
+
+			String[] args = {
+					"-path", Paths.get("text", "simple").toString(),
+					"-threads", "5",
+					"-queue", "10",
+					"-stats", stats.toString()
+			};
+
+			Files.deleteIfExists(stats);
+
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkExceptions(args);
+			});
+
+			assertTrue(Files.isReadable(stats), "Unable to read statistics file.");
+			String json = new String(Files.readAllBytes(stats), StandardCharsets.UTF_8);
+			assertTrue(json.contains("\"queue\""), "Missing queue statistics.");
+
+			for (String stat : QUEUE_STATS) {
+				assertTrue(json.contains("\"" + stat + "\""), "Missing statistic: " + stat);
+			}
+
+			assertEquals(10, StatsTest.stat(json, "queue", "capacity"), "Wrong queue capacity.");
+			assertEquals(StatsTest.SIMPLE_FILES, StatsTest.stat(json, "queue", "tasks"), "Wrong number of tasks.");
+			assertEquals(0, StatsTest.stat(json, "queue", "failed"), "Wrong number of failed tasks.");
+
+			// every task was run by exactly one worker
+			long[] workers = array(json, "workers");
+			assertEquals(5, workers.length, "Wrong number of workers.");
+			assertEquals(StatsTest.SIMPLE_FILES, LongStream.of(workers).sum(), "Worker task counts do not add up.");
+			assertEquals(StatsTest.SIMPLE_FILES, LongStream.of(array(json, "wait")).sum(), "Wait histogram does not add up.");
+		}
+	}
+
+	/**
+	 * Returns the numbers in an array of the statistics output.
+	 *
+	 * @param json the statistics output
+	 * @param key  the key of the array
+	 * @return the numbers in the array, or an empty array if not found
+	 */
+	public static long[] array(String json, String key) {
+		Matcher matcher = Pattern.compile("\"" + Pattern.quote(key) + "\"\\s*:\\s*\\[([^\\]]*)\\]").matcher(json);
+
+		if (!matcher.find() || matcher.group(1).trim().isEmpty()) {
+			return new long[0];
+		}
+
+		return Stream.of(matcher.group(1).split(",")).mapToLong(value -> Long.parseLong(value.trim())).toArray();
+	}
+
+	@Nested
+	public class ExceptionsTest {
+
+		@Test
+		public void testInvalidCapacity() {
+			String path = Paths.get("text", "simple").toString();
+			String[] args = { "-path", path, "-threads", "5", "-queue", "fox" };
+			assertTimeout(Duration.ofSeconds(30), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+
+		@Test
+		public void testZeroCapacity() {
+			String path = Paths.get("text", "simple").toString();
+			String[] args = { "-path", path, "-threads", "5", "-queue", "0" };
+			assertTimeout(Duration.ofSeconds(30), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+
+		@Test
+		public void testFailingTask() throws IOException {
+			// the unreadable file is a regular text file, so it is always queued
+			Path directory = TestUtilities.ACTUAL_PATH.resolve("failing");
+			Path hello = directory.resolve("hello.txt");
+			Path unreadable = directory.resolve("unreadable.txt");
+
+			Files.createDirectories(directory);
+			Files.copy(Paths.get("text", "simple", "hello.txt"), hello, StandardCopyOption.REPLACE_EXISTING);
+			Files.copy(Paths.get("text", "simple", "hello.txt"), unreadable, StandardCopyOption.REPLACE_EXISTING);
+
+			try {
+				Files.setPosixFilePermissions(unreadable, EnumSet.noneOf(PosixFilePermission.class));
+			}
+			catch (UnsupportedOperationException e) {
+				assumeTrue(false, "Unable to remove read permissions.");
+			}
+
+			Path stats = TestUtilities.ACTUAL_PATH.resolve("stats-failing.json");
+			Path actual = TestUtilities.ACTUAL_PATH.resolve("location-failing.json");
+			Path expected = TestUtilities.ACTUAL_PATH.resolve("expected-location-failing.json");
+
+			try {
+				assumeTrue(!Files.isReadable(unreadable), "Able to read files without read permissions.");
+
+				// the other task must still finish normally
+				SortedMap<String, Integer> counts = new TreeMap<>();
+				counts.put(hello.toString(), 6);
+				TestUtilities.writeLocations(counts, expected);
+
+				String[] args = {
+						"-path", directory.toString(),
+						"-locations", actual.toString(),
+						"-threads", "5",
+						"-queue", "1",
+						"-stats", stats.toString()
+				};
+
+				Files.deleteIfExists(stats);
+
+				// only keep what the waiting thread (this one) writes to System.err
+				Thread caller = Thread.currentThread();
+				ByteArrayOutputStream waiting = new ByteArrayOutputStream();
+				PrintStream original = System.err;
+
+				System.setErr(new PrintStream(new OutputStream() {
+					@Override
+					public void write(int b) {
+						if (Thread.currentThread() == caller) {
+							waiting.write(b);
+						}
+
+						original.write(b);
+					}
+				}, true));
+
+				try {
+					assertTimeout(Duration.ofSeconds(30), () -> {
+						TestUtilities.checkOutput(expected, actual, args);
+					});
+				}
+				finally {
+					System.setErr(original);
+				}
+
+				// the failure must reach the thread waiting on the queue
+				String reported = waiting.toString(StandardCharsets.UTF_8.name());
+				assertTrue(reported.contains(unreadable.getFileName().toString()),
+						"Failure was not reported by the waiting thread: " + reported);
+
+				assertTrue(Files.isReadable(stats), "Unable to read statistics file.");
+				String json = new String(Files.readAllBytes(stats), StandardCharsets.UTF_8);
+				assertEquals(1, StatsTest.stat(json, "queue", "failed"), "Wrong number of failed tasks.");
+			}
+			finally {
+				// so later runs can overwrite and delete the file
+				Files.setPosixFilePermissions(unreadable,
+						EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE));
+			}
+		}
+
+		@Test
+		public void testFailingCrawl() {
+			// every fetch fails, which must not hang the queue
+			String[] args = { "-url", "http://127.0.0.1:1/", "-limit", "10", "-threads", "5", "-queue", "1" };
+			assertTimeout(Duration.ofSeconds(30), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+	}
+}
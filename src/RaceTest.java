@@ -0,0 +1,271 @@
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+/*
+ * Runs the index, search, and crawl pipelines many times with random thread
+ * counts and injected scheduling jitter, to expose races that only show up
+ * once in a few hundred runs. When the -jitter flag is provided, the work
+ * queue should randomly yield or sleep (for at most a millisecond) before and
+ * after every task, using a random number generator seeded by the flag value.
+ * Jitter must never change the output.
+ *
+ * Every run is checked against the expected output. The seed and arguments of
+ * every failing run are appended to the SEEDS file, and replayed before any
+ * new seeds the next time this test runs. The number of runs and the first
+ * seed can be set with the race.runs and race.seed system properties, for
+ * example:
+ *
+ *   -Drace.runs=1000 -Drace.seed=212
+ *
+ * This test is not part of any project test group. You have to run it
+ * separately, and it takes awhile.
+ */
+public class RaceTest {
+
+	/** File where the seeds of failing runs are recorded for replay. */
+	public static final Path SEEDS = TestUtilities.ACTUAL_PATH.resolve("race-seeds.txt");
+
+	/** Number of runs per pipeline. */
+	public static final int RUNS = Integer.getInteger("race.runs", 200);
+
+	/** Seed for the first run, each later run uses the next seed. */
+	public static final long SEED = Long.getLong("race.seed", System.currentTimeMillis());
+
+	/** Largest number of threads to use for a run. */
+	public static final int MAX_THREADS = 32;
+
+	// timeout PER RUN (not for all runs)
+	public static final Duration TIMEOUT = Duration.ofMinutes(1);
+
+	private static final int PAGES = 20;
+
+	private static TestServer server;
+
+	private static Path crawlExpected;
+
+	/**
+	 * Starts a local server with a small generated site where every page links
+	 * to the next few pages, and writes the expected locations output for it.
+	 *
+	 * @throws IOException if unable to start the server
+	 */
+	@BeforeAll
+	public static void startServer() throws IOException {
+		server = new TestServer();
+
+		CorpusGenerator generator = new CorpusGenerator();
+		Random random = new Random(212);
+		SortedMap<String, Integer> counts = new TreeMap<>();
+
+		for (int i = 0; i < PAGES; i++) {
+			int words = 100 + random.nextInt(400);
+			StringBuilder page = new StringBuilder("<html><body><p>\n");
+
+			for (int j = 0; j < words; j++) {
+				page.append(generator.word(generator.nextRank(random)));
+				page.append(j % 12 == 11 ? '\n' : ' ');
+			}
+
+			page.append("</p>\n");
+
+			// links that revisit the same pages from different threads
+			for (int j = 1; j <= 3; j++) {
+				page.append(String.format("<a href=\"page%02d.html\"></a>%n", (i + j) % PAGES));
+			}
+
+			page.append("</body></html>\n");
+
+			String name = String.format("/page%02d.html", i);
+			server.addPage(name, page.toString());
+			counts.put(server.url(name).toString(), words);
+		}
+
+		crawlExpected = TestUtilities.ACTUAL_PATH.resolve("expected-location-race.json");
+		TestUtilities.writeLocations(counts, crawlExpected);
+	}
+
+	@AfterAll
+	public static void stopServer() {
+		server.close();
+	}
+
+	/**
+	 * Returns the expected output and Driver arguments for one run of a
+	 * pipeline. The output path is always the last argument.
+	 *
+	 * @param pipeline the pipeline to run (index, search, or crawl)
+	 * @param threads  the number of threads
+	 * @param seed     the jitter seed
+	 * @return the expected output followed by the arguments
+	 */
+	public static String[] arguments(String pipeline, int threads, long seed) {
+		Path actual = TestUtilities.ACTUAL_PATH.resolve("race-" + pipeline + ".json");
+
+		switch (pipeline) {
+			case "index":
+				return new String[] {
+						TestUtilities.EXPECTED_PATH.resolve("index-text").resolve("index-text-all.json").toString(),
+						"-path", Paths.get("text").toString(),
+						"-threads", Integer.toString(threads),
+						"-jitter", Long.toString(seed),
+						"-index", actual.toString()
+				};
+			case "search":
+				return new String[] {
+						TestUtilities.EXPECTED_PATH.resolve("results-text-partial")
+								.resolve("results-text-letters-all.json").toString(),
+						"-path", Paths.get("text").toString(),
+						"-search", Paths.get("query", "letters.txt").toString(),
+						"-threads", Integer.toString(threads),
+						"-jitter", Long.toString(seed),
+						"-results", actual.toString()
+				};
+			case "crawl":
+				return new String[] {
+						crawlExpected.toString(),
+						"-url", server.url("/page00.html").toString(),
+						"-limit", Integer.toString(PAGES),
+						"-threads", Integer.toString(threads),
+						"-jitter", Long.toString(seed),
+						"-locations", actual.toString()
+				};
+			default:
+				throw new IllegalArgumentException("Unknown pipeline: " + pipeline);
+		}
+	}
+
+	/**
+	 * Runs a pipeline once and checks the output. If the output is wrong, the
+	 * run is recorded in the SEEDS file so it can be replayed.
+	 *
+	 * @param pipeline the pipeline to run (index, search, or crawl)
+	 * @param threads  the number of threads
+	 * @param seed     the jitter seed
+	 * @return true if the output was correct
+	 * @throws IOException if unable to record the seed
+	 */
+	public static boolean run(String pipeline, int threads, long seed) throws IOException {
+		String[] params = arguments(pipeline, threads, seed);
+		Path expected = Paths.get(params[0]);
+		Path actual = Paths.get(params[params.length - 1]);
+
+		String[] args = new String[params.length - 1];
+		System.arraycopy(params, 1, args, 0, args.length);
+
+		try {
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkOutput(expected, actual, args);
+			});
+
+			return true;
+		}
+		catch (AssertionError e) {
+			record(pipeline, threads, seed);
+			return false;
+		}
+	}
+
+	/**
+	 * Runs a pipeline many times with random thread counts and consecutive
+	 * seeds, and fails with the list of failing seeds if any run was wrong.
+	 *
+	 * @param pipeline the pipeline to run (index, search, or crawl)
+	 * @throws IOException if unable to record the seeds
+	 */
+	public static void stress(String pipeline) throws IOException {
+		Random random = new Random(SEED);
+		List<String> failed = new ArrayList<>();
+
+		for (int i = 0; i < RUNS; i++) {
+			int threads = 1 + random.nextInt(MAX_THREADS);
+			long seed = SEED + i;
+
+			if (!run(pipeline, threads, seed)) {
+				failed.add(String.format("%d threads, seed %d", threads, seed));
+			}
+		}
+
+		System.out.printf("%s: %d of %d runs failed (first seed %d)%n", pipeline, failed.size(), RUNS, SEED);
+		assertTrue(failed.isEmpty(), String.format("Failing %s runs (see %s): %s", pipeline, SEEDS, failed));
+	}
+
+	/**
+	 * Returns one test for every distinct run recorded in the SEEDS file. The
+	 * file is read right away, so runs recorded by later failures are not
+	 * replayed until the next time this test runs.
+	 *
+	 * @return tests that replay the recorded runs
+	 * @throws IOException if unable to read the seed file
+	 */
+	public static Stream<DynamicTest> replay() throws IOException {
+		List<String> lines = new ArrayList<>();
+
+		if (Files.isReadable(SEEDS)) {
+			lines.addAll(Files.readAllLines(SEEDS, StandardCharsets.UTF_8));
+		}
+
+		return lines.stream().filter(line -> !line.trim().isEmpty()).distinct().map(line -> dynamicTest(
+				"replay " + line.trim(), () -> {
+			String[] parts = line.trim().split("\\s+");
+			String[] params = arguments(parts[0], Integer.parseInt(parts[1]), Long.parseLong(parts[2]));
+
+			String[] args = new String[params.length - 1];
+			System.arraycopy(params, 1, args, 0, args.length);
+
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkOutput(Paths.get(params[0]), Paths.get(params[params.length - 1]), args);
+			});
+		}));
+	}
+
+	@TestFactory
+	public Stream<DynamicTest> testStress() throws IOException {
+		// dynamic tests run in stream order, so recorded runs are replayed first
+		Stream<DynamicTest> stress = Stream.of("index", "search", "crawl").map(pipeline -> dynamicTest(
+				pipeline, () -> {
+			stress(pipeline);
+		}));
+
+		return Stream.concat(replay(), stress);
+	}
+
+	/**
+	 * Appends a run to the SEEDS file, so it is replayed the next time this
+	 * test runs. Can also be called by hand to replay a seed reported by
+	 * someone else.
+	 *
+	 * @param pipeline the pipeline to run (index, search, or crawl)
+	 * @param threads  the number of threads
+	 * @param seed     the jitter seed
+	 * @throws IOException if unable to write the seed file
+	 */
+	public static void record(String pipeline, int threads, long seed) throws IOException {
+		Files.createDirectories(SEEDS.getParent());
+
+		try (BufferedWriter writer = Files.newBufferedWriter(SEEDS, StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+			writer.write(String.format("%s %d %d%n", pipeline, threads, seed));
+		}
+	}
+}
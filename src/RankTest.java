@@ -0,0 +1,133 @@
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.TestFactory;
+
+/*
+ * Tests the alternative ranking modes. With -rank bm25, each matching stem
+ * contributes the following to the score of a location:
+ *
+ *   idf * tf * (k1 + 1) / (tf + k1 * (1 - b + b * dl / avgdl))
+ *
+ * where tf is the number of times the stem appears in the location, dl is the
+ * total number of words in the location, avgdl is the average dl over all
+ * locations in the index, k1 = 1.2 and b = 0.75. The idf is calculated as:
+ *
+ *   ln(1 + (n - df + 0.5) / (df + 0.5))
+ *
+ * where n is the number of locations in the index and df is the number of
+ * locations that contain the stem. The count is unchanged, and results are
+ * still sorted by score, then count, then location.
+ *
+ * Any other -rank value (or no value) uses the default ranking.
+ */
+public class RankTest {
+
+	public static final Duration TIMEOUT = Duration.ofMinutes(3);
+
+	public static class BM25ExactTest {
+
+		@TestFactory
+		public Stream<DynamicTest> testSimple() {
+			Path path = Paths.get("text", "simple");
+			String[][] tests = {
+					{ "simple-simple", "simple.txt", path.toString() },
+					{ "letters-simple", "letters.txt", path.toString() }
+			};
+
+			return generateTests(tests);
+		}
+
+		@TestFactory
+		public Stream<DynamicTest> testRFCs() {
+			String[][] tests = {
+					{ "letters-rfcs", "letters.txt", Paths.get("text", "rfcs").toString() }
+			};
+
+			return generateTests(tests);
+		}
+
+		public Stream<DynamicTest> generateTests(String[][] tests) {
+			return Stream.of(tests).map(params -> dynamicTest(params[0], () -> {
+				String filename = String.format("results-text-bm25-exact-%s.json", params[0]);
+				Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+				Path expected = TestUtilities.EXPECTED_PATH.resolve("results-text-bm25").resolve(filename);
+
+				String[] args = {
+						"-path", params[2],
+						"-search", Paths.get("query", params[1]).toString(),
+						"-results", actual.toString(),
+						"-exact",
+						"-rank", "bm25"
+				};
+
+				assertTimeout(TIMEOUT, () -> {
+					TestUtilities.checkOutput(expected, actual, args);
+				});
+			}));
+		}
+	}
+
+	@Nested
+	public class NestedBM25ExactTest extends BM25ExactTest {
+		// Placeholder for nesting tests
+	}
+
+	@Nested
+	public class NestedBM25PartialTest extends BM25ExactTest {
+		// All of the same tests as BM25ExactTest, but this time WITHOUT the
+		// -exact search flag.
+
+		@Override
+		public Stream<DynamicTest> generateTests(String[][] tests) {
+			return Stream.of(tests).map(params -> dynamicTest(params[0], () -> {
+				String filename = String.format("results-text-bm25-partial-%s.json", params[0]);
+				Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+				Path expected = TestUtilities.EXPECTED_PATH.resolve("results-text-bm25").resolve(filename);
+
+				String[] args = {
+						"-path", params[2],
+						"-search", Paths.get("query", params[1]).toString(),
+						"-results", actual.toString(),
+						"-rank", "bm25"
+				};
+
+				assertTimeout(TIMEOUT, () -> {
+					TestUtilities.checkOutput(expected, actual, args);
+				});
+			}));
+		}
+	}
+
+	@Nested
+	public class NestedDefaultRankTest extends SearchTest.SearchExactTest {
+		// Invalid -rank values must fall back to the default ranking.
+
+		@Override
+		public Stream<DynamicTest> generateTests(String[][] tests) {
+			return Stream.of(tests).map(params -> dynamicTest(params[0], () -> {
+				String filename = String.format("results-text-%s.json", params[0]);
+				Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+				Path expected = TestUtilities.EXPECTED_PATH.resolve("results-text-partial").resolve(filename);
+
+				String[] args = {
+						"-path", params[2],
+						"-search", Paths.get("query", params[1]).toString(),
+						"-results", actual.toString(),
+						"-rank", "fox"
+				};
+
+				assertTimeout(TIMEOUT, () -> {
+					TestUtilities.checkOutput(expected, actual, args);
+				});
+			}));
+		}
+	}
+}
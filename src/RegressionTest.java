@@ -0,0 +1,301 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+/*
+ * Compares the runtime of two different builds of your code, and fails if the
+ * candidate build is slower than the baseline build by more than chance would
+ * explain. Each build is a jar file with a Driver class, given by the
+ * regression.baseline and regression.candidate system properties, for
+ * example:
+ *
+ *   -Dregression.baseline=v3.0.0.jar -Dregression.candidate=v3.1.0.jar
+ *
+ * The jar files do not need to bundle their dependencies (like opennlp-tools).
+ * The regression.classpath system property is appended to the classpath of
+ * both builds, and defaults to every jar file on the classpath of this test
+ * (but not its class directories, so classes missing from a build are never
+ * loaded from the code under test instead). For example:
+ *
+ *   -Dregression.classpath=lib/opennlp-tools-1.9.1.jar
+ *
+ * Every run starts a fresh JVM, and runs of the two builds alternate so that
+ * changes in machine load affect both builds equally. The runtimes of each
+ * scenario are compared with a one-sided Mann-Whitney U test. A scenario fails
+ * when the candidate is significantly slower AND its median runtime is more
+ * than SLOWDOWN slower, so tiny but consistent differences do not fail.
+ *
+ * This test is not part of any project test group. You have to run it
+ * separately. It is skipped if the jar files are not provided.
+ *
+ * TURN OFF LOGGING BEFORE RUNNING THIS BENCHMARK!
+ */
+public class RegressionTest {
+
+	/** Number of timed runs of each build per scenario. */
+	public static final int RUNS = Integer.getInteger("regression.runs", 15);
+
+	/** Significance level of the one-sided test. */
+	public static final double ALPHA = 0.01;
+
+	/** Smallest relative slowdown of the median that counts as a regression. */
+	public static final double SLOWDOWN = 0.05;
+
+	/** Classpath of the dependencies of both builds, see {@link #dependencies()}. */
+	public static final String DEPENDENCIES = dependencies();
+
+	// timeout PER RUN (not for all runs)
+	private static final long TIMEOUT = 5;
+
+	/**
+	 * Returns the classpath of the dependencies of both builds, either from the
+	 * regression.classpath property or the jar files on the current classpath.
+	 *
+	 * @return dependency classpath (possibly empty)
+	 */
+	public static String dependencies() {
+		String dependencies = System.getProperty("regression.classpath");
+
+		if (dependencies != null) {
+			return dependencies.trim();
+		}
+
+		List<String> jars = new ArrayList<>();
+
+		for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+			if (entry.toLowerCase().endsWith(".jar")) {
+				jars.add(entry);
+			}
+		}
+
+		return String.join(File.pathSeparator, jars);
+	}
+
+	/**
+	 * Returns the arguments of the scenarios to compare, which match the
+	 * StressTest runtime tests and the BenchmarkTest exact search test.
+	 *
+	 * @return scenario names followed by their arguments
+	 */
+	public static String[][] scenarios() {
+		String text = Paths.get("text").toString();
+		String letters = Paths.get("query", "letters.txt").toString();
+		String guten = Paths.get("text", "gutenberg").toString();
+		String gutenberg = Paths.get("query", "gutenberg.txt").toString();
+
+		return new String[][] {
+				{ "index (1 thread)", "-path", text, "-threads", "1" },
+				{ "index (5 threads)", "-path", text, "-threads", "5" },
+				{ "search (1 thread)", "-path", text, "-search", letters, "-threads", "1" },
+				{ "search (5 threads)", "-path", text, "-search", letters, "-threads", "5" },
+				{ "exact (1 thread)", "-path", guten, "-search", gutenberg, "-exact", "-threads", "1" },
+				{ "exact (5 threads)", "-path", guten, "-search", gutenberg, "-exact", "-threads", "5" }
+		};
+	}
+
+	/**
+	 * Runs the Driver in the jar file (followed by the dependencies) in a fresh
+	 * JVM and returns the elapsed time, including JVM startup.
+	 *
+	 * @param jar  the jar file with the Driver class
+	 * @param args arguments to pass to Driver
+	 * @return elapsed time in nanoseconds
+	 * @throws IOException          if unable to start the JVM
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public static long fork(Path jar, String[] args) throws IOException, InterruptedException {
+		List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.add("-cp");
+		command.add(DEPENDENCIES.isEmpty() ? jar.toString() : jar + File.pathSeparator + DEPENDENCIES);
+		command.add("Driver");
+		command.addAll(Arrays.asList(args));
+
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectErrorStream(true);
+		builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+
+		long start = System.nanoTime();
+		Process process = builder.start();
+
+		if (!process.waitFor(TIMEOUT, TimeUnit.MINUTES)) {
+			process.destroyForcibly();
+			throw new IllegalStateException("Timed out running " + jar + " " + String.join(" ", args));
+		}
+
+		long elapsed = System.nanoTime() - start;
+		assertEquals(0, process.exitValue(), "Non-zero exit running " + jar + " " + String.join(" ", args));
+		return elapsed;
+	}
+
+	/**
+	 * Returns the one-sided p-value of the Mann-Whitney U test that values in
+	 * the second sample tend to be larger than values in the first sample,
+	 * using the normal approximation with a tie correction.
+	 *
+	 * @param first  the first sample (e.g. baseline runtimes)
+	 * @param second the second sample (e.g. candidate runtimes)
+	 * @return probability of a U statistic this large if both samples come
+	 *         from the same distribution
+	 */
+	public static double mannWhitney(long[] first, long[] second) {
+		int n1 = first.length;
+		int n2 = second.length;
+		int n = n1 + n2;
+
+		// sort all values while remembering which sample they came from
+		long[][] all = new long[n][2];
+
+		for (int i = 0; i < n1; i++) {
+			all[i] = new long[] { first[i], 0 };
+		}
+
+		for (int i = 0; i < n2; i++) {
+			all[n1 + i] = new long[] { second[i], 1 };
+		}
+
+		Arrays.sort(all, (a, b) -> Long.compare(a[0], b[0]));
+
+		// assign average ranks to ties
+		double secondRanks = 0;
+		double ties = 0;
+
+		for (int i = 0; i < n;) {
+			int j = i;
+
+			while (j < n && all[j][0] == all[i][0]) {
+				j++;
+			}
+
+			double rank = (i + 1 + j) / 2.0;
+			double count = j - i;
+			ties += count * count * count - count;
+
+			for (int k = i; k < j; k++) {
+				if (all[k][1] == 1) {
+					secondRanks += rank;
+				}
+			}
+
+			i = j;
+		}
+
+		double u = secondRanks - n2 * (n2 + 1) / 2.0;
+		double mean = n1 * n2 / 2.0;
+		double variance = n1 * n2 / 12.0 * ((n + 1) - ties / ((double) n * (n - 1)));
+
+		if (variance <= 0) {
+			return 1.0;
+		}
+
+		// continuity correction
+		double z = (u - mean - 0.5) / Math.sqrt(variance);
+		return 1.0 - normal(z);
+	}
+
+	/**
+	 * Returns the standard normal cumulative distribution function, using the
+	 * Abramowitz and Stegun approximation (error below 1e-7).
+	 *
+	 * @param z the value
+	 * @return probability a standard normal value is at most z
+	 */
+	public static double normal(double z) {
+		double t = 1.0 / (1.0 + 0.2316419 * Math.abs(z));
+		double d = 0.3989422804014327 * Math.exp(-z * z / 2.0);
+		double p = d * t * (0.319381530 + t * (-0.356563782 + t * (1.781477937 + t * (-1.821255978 + t * 1.330274429))));
+		return z >= 0 ? 1.0 - p : p;
+	}
+
+	/**
+	 * Returns the median of the values.
+	 *
+	 * @param values the values
+	 * @return the median
+	 */
+	public static double median(long[] values) {
+		long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		int middle = sorted.length / 2;
+		return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2.0;
+	}
+
+	@Test
+	public void testMannWhitney() {
+		long[] same = { 10, 11, 12, 13, 14, 15, 16, 17 };
+		long[] slower = { 20, 21, 22, 23, 24, 25, 26, 27 };
+		long[] faster = { 1, 2, 3, 4, 5, 6, 7, 8 };
+
+		assertTrue(mannWhitney(same, slower) < ALPHA, "Slower sample not detected.");
+		assertTrue(mannWhitney(same, faster) > 1 - ALPHA, "Faster sample detected as slower.");
+		assertTrue(mannWhitney(same, same) > ALPHA, "Same sample detected as slower.");
+	}
+
+	@TestFactory
+	public Stream<DynamicTest> testRegression() {
+		String baseline = System.getProperty("regression.baseline");
+		String candidate = System.getProperty("regression.candidate");
+
+		assumeTrue(baseline != null && candidate != null,
+				"Set regression.baseline and regression.candidate to compare two jar files.");
+
+		Path jar1 = Paths.get(baseline);
+		Path jar2 = Paths.get(candidate);
+
+		assumeTrue(Files.isReadable(jar1) && Files.isReadable(jar2), "Unable to read jar files.");
+
+		return Stream.of(scenarios()).map(params -> dynamicTest(params[0], () -> {
+			String[] args = Arrays.copyOfRange(params, 1, params.length);
+
+			// one untimed run of each build to warm up the disk cache
+			fork(jar1, args);
+			fork(jar2, args);
+
+			long[] runs1 = new long[RUNS];
+			long[] runs2 = new long[RUNS];
+
+			// alternate which build goes first, so neither always runs on a "cooler" machine
+			for (int i = 0; i < RUNS; i++) {
+				if (i % 2 == 0) {
+					runs1[i] = fork(jar1, args);
+					runs2[i] = fork(jar2, args);
+				}
+				else {
+					runs2[i] = fork(jar2, args);
+					runs1[i] = fork(jar1, args);
+				}
+			}
+
+			double median1 = median(runs1) / 1000000000.0;
+			double median2 = median(runs2) / 1000000000.0;
+			double change = (median2 - median1) / median1;
+			double p = mannWhitney(runs1, runs2);
+
+			System.out.println();
+			System.out.printf("Regression Benchmark: %s (%d runs each)%n", params[0], RUNS);
+			System.out.printf(" Baseline: %10.6f s (median)%n", median1);
+			System.out.printf("Candidate: %10.6f s (median)%n", median2);
+			System.out.printf("   Change: %+9.2f %%%n", change * 100);
+			System.out.printf("  P-Value: %10.6f %n%n", p);
+
+			assertTrue(p >= ALPHA || change <= SLOWDOWN, String.format(
+					"Candidate is %.2f%% slower than baseline (p = %.6f).", change * 100, p));
+		}));
+	}
+}
@@ -0,0 +1,201 @@
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+/*
+ * Measures how indexing and searching scale on generated corpora that are
+ * much larger than the provided text/ directory. The corpora are generated
+ * once into the out/ directory and reused on later runs.
+ *
+ * Every run of the Driver happens in its own JVM (see main), so the peak heap
+ * and peak resident set size of each corpus are not hidden by the larger
+ * corpora run before it. The search time is the search stage time from the
+ * -stats output of the search run (see StatsTest), so it excludes the time to
+ * build the index, and is reported in queries per second. The JVM flags used for every
+ * run can be changed with the scaling.flags system property, for example:
+ *
+ *   -Dscaling.flags="-Xmx16g -XX:+UseParallelGC"
+ *
+ * This test is not part of any project test group. You have to run it
+ * separately, and you will need plenty of disk space and memory for the
+ * larger corpora.
+ *
+ * TURN OFF LOGGING BEFORE RUNNING THIS BENCHMARK!
+ */
+public class ScalingTest {
+
+	public static final Path CORPUS_PATH = TestUtilities.ACTUAL_PATH.resolve("corpus");
+
+	/** JVM flags used for every run, unless the scaling.flags property is set. */
+	public static final String FLAGS = "-Xmx8g -XX:+UseG1GC";
+
+	private static final long MEGABYTE = 1024 * 1024;
+
+	private static final long KILOBYTE = 1024;
+
+	private static final int QUERIES = 1000;
+
+	// timeout PER CORPUS (not for all corpora)
+	private static final Duration TIMEOUT = Duration.ofHours(2);
+
+	/**
+	 * Runs the Driver once in a fresh JVM, and returns the elapsed time, peak
+	 * heap, and peak resident set size of that run.
+	 *
+	 * @param args arguments to pass to {@link Driver}
+	 * @return elapsed nanoseconds, peak heap bytes, and peak resident bytes (or
+	 *         -1 if unavailable), in that order
+	 * @throws IOException          if unable to start the JVM or read its results
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public static long[] fork(String[] args) throws IOException, InterruptedException {
+		return TestUtilities.fork(System.getProperty("scaling.flags", FLAGS), "ScalingTest", args, TIMEOUT);
+	}
+
+	/**
+	 * Generates the corpus and matching query file (if necessary), and then
+	 * reports the throughput and peak memory of indexing and searching it.
+	 *
+	 * @param name  name of the corpus
+	 * @param files number of files in the corpus
+	 * @param bytes approximate total size of the corpus
+	 * @throws IOException          if unable to run the Driver
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public static void test(String name, int files, long bytes) throws IOException, InterruptedException {
+		CorpusGenerator generator = new CorpusGenerator();
+
+		Path corpus = CORPUS_PATH.resolve(name);
+		Path query = CORPUS_PATH.resolve("query-" + name + ".txt");
+		Path results = TestUtilities.ACTUAL_PATH.resolve("results-corpus-" + name + ".json");
+		Path stats = TestUtilities.ACTUAL_PATH.resolve("stats-corpus-" + name + ".json");
+
+		try {
+			System.out.printf("%nGenerating: %s...%n", corpus.toString());
+			generator.generateCorpus(corpus, files, bytes);
+			generator.generateQueries(query, QUERIES);
+		}
+		catch (IOException e) {
+			fail("Unable to generate corpus " + corpus + ": " + e.getMessage());
+		}
+
+		String[] args1 = {
+				"-path", corpus.toString()
+		};
+
+		String[] args2 = {
+				"-path", corpus.toString(),
+				"-search", query.toString(),
+				"-results", results.toString(),
+				"-stats", stats.toString()
+		};
+
+		long[] index = fork(args1);
+		long[] search = fork(args2);
+
+		// only the search stage of the search run, timed within that single run
+		String json = new String(Files.readAllBytes(stats), StandardCharsets.UTF_8);
+		long searchTime = StatsTest.stat(json, "search", "time");
+		assertTrue(searchTime > 0, "Missing search time in " + stats);
+
+		double indexSeconds = index[0] / 1000000000.0;
+		double searchSeconds = searchTime / 1000000000.0;
+		double megabytes = (double) bytes / MEGABYTE;
+
+		System.out.printf("Scaling Benchmark (%s, %d files, %d queries):%n", name, files, QUERIES);
+		System.out.printf("%-6s    %10s    %19s    %9s    %9s%n", "Mode", "Seconds", "Throughput", "Peak Heap", "Peak RSS");
+		System.out.printf("%-6s    %10.6f    %9.2f MB/s         %6d MB    %6s MB%n", "Index",
+				indexSeconds, megabytes / indexSeconds, index[1] / MEGABYTE, megabytes(index[2]));
+		System.out.printf("%-6s    %10.6f    %9.2f queries/s    %6d MB    %6s MB%n%n", "Search",
+				searchSeconds, QUERIES / searchSeconds, search[1] / MEGABYTE, megabytes(search[2]));
+	}
+
+	/**
+	 * Formats a number of bytes as whole megabytes.
+	 *
+	 * @param bytes number of bytes, or -1 if unavailable
+	 * @return megabytes or "n/a"
+	 */
+	private static String megabytes(long bytes) {
+		return bytes < 0 ? "n/a" : Long.toString(bytes / MEGABYTE);
+	}
+
+	/**
+	 * Returns the peak resident set size of this process, if the operating
+	 * system makes it available. This value only ever increases within a JVM,
+	 * which is why every run is forked.
+	 *
+	 * @return peak resident set size in bytes, or -1 if unavailable
+	 */
+	public static long peakResident() {
+		Path status = Paths.get("/proc/self/status");
+
+		if (Files.isReadable(status)) {
+			try (BufferedReader reader = Files.newBufferedReader(status, StandardCharsets.UTF_8)) {
+				String line = null;
+
+				while ((line = reader.readLine()) != null) {
+					if (line.startsWith("VmHWM:")) {
+						// for example "VmHWM:    123456 kB"
+						String[] parts = line.substring("VmHWM:".length()).trim().split("\\s+");
+						return Long.parseLong(parts[0]) * KILOBYTE;
+					}
+				}
+			}
+			catch (IOException | NumberFormatException e) {
+				return -1;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Runs the Driver once inside a fresh JVM, and writes the elapsed time in
+	 * nanoseconds, the peak heap in bytes, and the peak resident set size in
+	 * bytes (or -1) one per line to the output file. Started by
+	 * {@link #fork(String[])} and FetchTest, not by JUnit.
+	 *
+	 * Usage: java ScalingTest <output> <driver arguments...>
+	 *
+	 * @param args output file followed by the Driver arguments
+	 * @throws IOException if unable to write the output file
+	 */
+	public static void main(String[] args) throws IOException {
+		Path output = Paths.get(args[0]);
+		String[] driver = Arrays.copyOfRange(args, 1, args.length);
+
+		long elapsed = TestUtilities.measure(driver);
+		long heap = TestUtilities.peakHeap();
+		TestUtilities.writeNumbers(output, elapsed, heap, peakResident());
+	}
+
+	@TestFactory
+	public Stream<DynamicTest> testScaling() {
+		Object[][] tests = {
+				{ "100mb", 1000, 100 * MEGABYTE },
+				{ "1gb", 10000, 1024 * MEGABYTE },
+				{ "5gb", 50000, 5 * 1024 * MEGABYTE }
+		};
+
+		return Stream.of(tests).map(params -> dynamicTest((String) params[0], () -> {
+			assertTimeout(TIMEOUT, () -> {
+				test((String) params[0], (Integer) params[1], (Long) params[2]);
+			});
+		}));
+	}
+}
@@ -0,0 +1,326 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+/*
+ * Tests the long-running search server mode. When the -serve flag is
+ * provided with a port, the Driver should build the index once and then
+ * answer queries over HTTP until asked to shut down:
+ *
+ *   GET /search?query=<query>&exact=<true|false>
+ *       responds with a single JSON object with the same "queries" and
+ *       "results" members as one entry of the -results output
+ *
+ *   GET /shutdown
+ *       stops the server, after which Driver.main returns
+ *
+ * When the -reindex flag is also provided, the Driver should keep rebuilding
+ * the index from -path in the background while serving. Each rebuilt index is
+ * published as a new immutable snapshot in a single atomic step, and every
+ * search reads exactly one complete snapshot without waiting on a lock:
+ *
+ *   GET /snapshot
+ *       responds with the number of snapshots published so far
+ *
+ * This test is not part of any project test group. You have to run it
+ * separately.
+ */
+public class ServerTest {
+
+	public static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+	private static final int CLIENTS = 8;
+
+	private static final Pattern QUERIES = Pattern.compile("\"queries\"\\s*:\\s*\"([^\"]*)\"");
+
+	/**
+	 * Returns a port that is currently free on the local machine.
+	 *
+	 * @return free port
+	 * @throws IOException if unable to open a socket
+	 */
+	public static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	/**
+	 * Starts {@link Driver} in server mode in a background thread, and waits
+	 * until the server accepts requests.
+	 *
+	 * @param path path to index
+	 * @param port port to serve on
+	 * @return the thread running the server
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public static Thread startServer(String path, int port) throws InterruptedException {
+		String[] args = { "-path", path, "-serve", Integer.toString(port) };
+		return startServer(args, port);
+	}
+
+	/**
+	 * Starts {@link Driver} in server mode with the arguments provided in a
+	 * background thread, and waits until the server accepts requests.
+	 *
+	 * @param args arguments to pass to {@link Driver}, including -serve
+	 * @param port port the arguments serve on
+	 * @return the thread running the server
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public static Thread startServer(String[] args, int port) throws InterruptedException {
+		Thread server = new Thread(() -> {
+			TestUtilities.checkExceptions(args);
+		});
+
+		server.setDaemon(true);
+		server.start();
+
+		while (server.isAlive()) {
+			try {
+				request(port, "/search?query=");
+				return server;
+			}
+			catch (IOException e) {
+				// the index is probably still being built
+				Thread.sleep(100);
+			}
+		}
+
+		fail("Server stopped before accepting requests: " + String.join(" ", args));
+		return server;
+	}
+
+	/**
+	 * Asks the server to shut down and waits for {@link Driver} to return.
+	 *
+	 * @param server the thread running the server
+	 * @param port   port the server is running on
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public static void stopServer(Thread server, int port) throws InterruptedException {
+		try {
+			request(port, "/shutdown");
+		}
+		catch (IOException e) {
+			// server may close the connection before responding
+		}
+
+		server.join(TIMEOUT.toMillis());
+		assertTrue(!server.isAlive(), "Server did not shut down.");
+	}
+
+	/**
+	 * Sends a GET request to the local server and returns the response body.
+	 *
+	 * @param port     port the server is running on
+	 * @param resource resource to request (including the query string)
+	 * @return body of the response
+	 * @throws IOException if unable to connect or the response is not 200 OK
+	 */
+	public static String request(int port, String resource) throws IOException {
+		URL url = new URL("http", "localhost", port, resource);
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+
+		try {
+			connection.setConnectTimeout(1000);
+			connection.setReadTimeout((int) TIMEOUT.toMillis());
+
+			if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+				throw new IOException("Unexpected response: " + connection.getResponseCode());
+			}
+
+			try (InputStream input = connection.getInputStream()) {
+				ByteArrayOutputStream output = new ByteArrayOutputStream();
+				byte[] buffer = new byte[8192];
+				int read = 0;
+
+				while ((read = input.read(buffer)) != -1) {
+					output.write(buffer, 0, read);
+				}
+
+				return output.toString(StandardCharsets.UTF_8.name());
+			}
+		}
+		finally {
+			connection.disconnect();
+		}
+	}
+
+	/**
+	 * Sends a search request for a single query line.
+	 *
+	 * @param port  port the server is running on
+	 * @param query query line to search for
+	 * @param exact whether to perform an exact search
+	 * @return body of the response
+	 * @throws IOException if unable to complete the request
+	 */
+	public static String search(int port, String query, boolean exact) throws IOException {
+		String encoded = URLEncoder.encode(query, StandardCharsets.UTF_8.name());
+		return request(port, "/search?query=" + encoded + "&exact=" + exact);
+	}
+
+	/**
+	 * Removes all whitespace, so that JSON documents with different formatting
+	 * can be compared.
+	 *
+	 * @param json JSON text
+	 * @return JSON text without whitespace
+	 */
+	public static String compact(String json) {
+		return json.replaceAll("\\s+", "");
+	}
+
+	/**
+	 * Sends every line of a query file to the server, and checks that the
+	 * combined responses match the expected -results output.
+	 *
+	 * @param port     port the server is running on
+	 * @param query    query file to send
+	 * @param expected expected results file
+	 * @param exact    whether to perform exact search
+	 * @throws IOException if unable to complete the requests
+	 */
+	public static void checkResults(int port, Path query, Path expected, boolean exact) throws IOException {
+		// combine responses by normalized query, just like the -results output
+		Map<String, String> responses = new TreeMap<>();
+
+		for (String line : Files.readAllLines(query, StandardCharsets.UTF_8)) {
+			String response = search(port, line, exact);
+			Matcher matcher = QUERIES.matcher(response);
+
+			if (!matcher.find()) {
+				fail("Missing queries in response to: " + line);
+			}
+
+			if (!matcher.group(1).isEmpty()) {
+				responses.put(matcher.group(1), response.trim());
+			}
+		}
+
+		String actual = "[" + String.join(",", responses.values()) + "]";
+		String expect = new String(Files.readAllBytes(expected), StandardCharsets.UTF_8);
+
+		assertEquals(compact(expect), compact(actual), "Responses do not match " + expected);
+	}
+
+	@TestFactory
+	public Stream<DynamicTest> testResults() {
+		String[][] tests = {
+				{ "simple-simple", "simple.txt", Paths.get("text", "simple").toString() },
+				{ "letters-rfcs", "letters.txt", Paths.get("text", "rfcs").toString() },
+				{ "guten-guten", "gutenberg.txt", Paths.get("text", "gutenberg").toString() },
+				{ "letters-all", "letters.txt", Paths.get("text").toString() }
+		};
+
+		return Stream.of(tests).map(params -> dynamicTest(params[0], () -> {
+			String filename = String.format("results-text-%s.json", params[0]);
+			Path query = Paths.get("query", params[1]);
+
+			assertTimeout(TIMEOUT, () -> {
+				int port = freePort();
+				Thread server = startServer(params[2], port);
+
+				try {
+					checkResults(port, query, TestUtilities.EXPECTED_PATH.resolve("results-text-exact").resolve(filename), true);
+					checkResults(port, query, TestUtilities.EXPECTED_PATH.resolve("results-text-partial").resolve(filename), false);
+				}
+				finally {
+					stopServer(server, port);
+				}
+			});
+		}));
+	}
+
+	@Test
+	public void testLoad() {
+		assertTimeout(TIMEOUT, () -> {
+			int port = freePort();
+			Thread server = startServer(Paths.get("text").toString(), port);
+
+			List<String> queries = Files.readAllLines(Paths.get("query", "letters.txt"), StandardCharsets.UTF_8);
+			ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+
+			try {
+				List<Future<long[]>> futures = new ArrayList<>();
+
+				long start = System.nanoTime();
+
+				for (int i = 0; i < CLIENTS; i++) {
+					futures.add(clients.submit(() -> {
+						long[] latencies = new long[queries.size()];
+
+						for (int j = 0; j < queries.size(); j++) {
+							long sent = System.nanoTime();
+							search(port, queries.get(j), j % 2 == 0);
+							latencies[j] = System.nanoTime() - sent;
+						}
+
+						return latencies;
+					}));
+				}
+
+				long[] latencies = new long[CLIENTS * queries.size()];
+				int index = 0;
+
+				for (Future<long[]> future : futures) {
+					for (long latency : future.get()) {
+						latencies[index++] = latency;
+					}
+				}
+
+				double elapsed = (System.nanoTime() - start) / 1000000000.0;
+				Arrays.sort(latencies);
+
+				System.out.printf("%nServer Load Benchmark (%d clients):%n", CLIENTS);
+				System.out.printf("  Requests: %10d%n", latencies.length);
+				System.out.printf("Throughput: %10.2f requests/s%n", latencies.length / elapsed);
+				System.out.printf("       p50: %10.3f ms%n", latencies[latencies.length / 2] / 1000000.0);
+				System.out.printf("       p99: %10.3f ms%n", latencies[latencies.length * 99 / 100] / 1000000.0);
+				System.out.printf("       max: %10.3f ms%n%n", latencies[latencies.length - 1] / 1000000.0);
+			}
+			catch (Exception e) {
+				StringWriter writer = new StringWriter();
+				e.printStackTrace(new PrintWriter(writer));
+				fail(writer.toString());
+			}
+			finally {
+				clients.shutdownNow();
+				stopServer(server, port);
+			}
+		});
+	}
+}
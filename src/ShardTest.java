@@ -0,0 +1,161 @@
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Tests the sharded inverted index. The -shards flag splits the index into
+ * that many partitions, and the -partition flag chooses whether words are
+ * assigned to shards by "location" (every word in the same file goes to the
+ * same shard) or by "word" (a hash of the word stem). Each shard is searched
+ * independently and the results are merged, so the output must be identical
+ * to the unsharded output for every shard count.
+ */
+public class ShardTest {
+
+	/** Shard counts to test. Includes counts larger than the number of files. */
+	public static final int[] SHARDS = { 1, 2, 3, 7, 32 };
+
+	/** Ways to partition the index into shards. */
+	public static final String[] PARTITIONS = { "location", "word" };
+
+	public static final Duration TIMEOUT = Duration.ofMinutes(3);
+
+	@Nested
+	public class ExceptionsTest {
+
+		@Test
+		public void testZeroShards() {
+			String path = Paths.get("text", "simple").toString();
+			String query = Paths.get("query", "simple.txt").toString();
+			String[] args = { "-path", path, "-search", query, "-shards", "0" };
+			assertTimeout(Duration.ofSeconds(30), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+
+		@Test
+		public void testInvalidShards() {
+			String path = Paths.get("text", "simple").toString();
+			String query = Paths.get("query", "simple.txt").toString();
+			String[] args = { "-path", path, "-search", query, "-shards", "fox" };
+			assertTimeout(Duration.ofSeconds(30), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+
+		@Test
+		public void testInvalidPartition() {
+			String path = Paths.get("text", "simple").toString();
+			String query = Paths.get("query", "simple.txt").toString();
+			String[] args = { "-path", path, "-search", query, "-shards", "2", "-partition", "fox" };
+			assertTimeout(Duration.ofSeconds(30), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+	}
+
+	@Nested
+	public class IndexOutputShards extends IndexTest.IndexOutputTest {
+
+		public Stream<DynamicTest> generateTests(String[][] tests, int shards, String partition) {
+			return Stream.of(tests).map(params -> dynamicTest(
+					params[0] + " (" + shards + " " + partition + " shards)", () -> {
+				String filename = String.format("index-text-%s.json", params[0]);
+				Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+				Path expected = TestUtilities.EXPECTED_PATH.resolve("index-text").resolve(filename);
+
+				String[] args = {
+						"-path", params[1],
+						"-index", actual.toString(),
+						"-shards", Integer.toString(shards),
+						"-partition", partition
+				};
+
+				assertTimeout(TIMEOUT, () -> {
+					TestUtilities.checkOutput(expected, actual, args);
+				});
+			}));
+		}
+
+		@Override
+		public Stream<DynamicTest> generateTests(String[][] tests) {
+			// don't do extensive shard testing for this case
+			Stream<DynamicTest> location = generateTests(tests, 3, "location");
+			Stream<DynamicTest> word = generateTests(tests, 3, "word");
+
+			return Stream.of(location, word).flatMap(s -> s);
+		}
+	}
+
+	@Nested
+	public class SearchExactShards extends SearchTest.SearchExactTest {
+
+		public Stream<DynamicTest> generateTests(String[][] tests, int shards, String partition) {
+			return Stream.of(tests).map(params -> dynamicTest(
+					params[0] + " (" + shards + " " + partition + " shards)", () -> {
+				String filename = String.format("results-text-%s.json", params[0]);
+				Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+				Path expected = TestUtilities.EXPECTED_PATH.resolve("results-text-exact").resolve(filename);
+
+				String[] args = {
+						"-path", params[2],
+						"-search", Paths.get("query", params[1]).toString(),
+						"-results", actual.toString(),
+						"-exact",
+						"-shards", Integer.toString(shards),
+						"-partition", partition
+				};
+
+				assertTimeout(TIMEOUT, () -> {
+					TestUtilities.checkOutput(expected, actual, args);
+				});
+			}));
+		}
+
+		@Override
+		public Stream<DynamicTest> generateTests(String[][] tests) {
+			return Stream.of(PARTITIONS).flatMap(partition -> IntStream.of(SHARDS).boxed()
+					.flatMap(shards -> generateTests(tests, shards, partition)));
+		}
+	}
+
+	@Nested
+	public class SearchPartialShards extends SearchTest.SearchExactTest {
+
+		public Stream<DynamicTest> generateTests(String[][] tests, int shards, String partition) {
+			return Stream.of(tests).map(params -> dynamicTest(
+					params[0] + " (" + shards + " " + partition + " shards)", () -> {
+				String filename = String.format("results-text-%s.json", params[0]);
+				Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+				Path expected = TestUtilities.EXPECTED_PATH.resolve("results-text-partial").resolve(filename);
+
+				String[] args = {
+						"-path", params[2],
+						"-search", Paths.get("query", params[1]).toString(),
+						"-results", actual.toString(),
+						"-shards", Integer.toString(shards),
+						"-partition", partition
+				};
+
+				assertTimeout(TIMEOUT, () -> {
+					TestUtilities.checkOutput(expected, actual, args);
+				});
+			}));
+		}
+
+		@Override
+		public Stream<DynamicTest> generateTests(String[][] tests) {
+			return Stream.of(PARTITIONS).flatMap(partition -> IntStream.of(SHARDS).boxed()
+					.flatMap(shards -> generateTests(tests, shards, partition)));
+		}
+	}
+}
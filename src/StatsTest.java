@@ -0,0 +1,241 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Tests the optional per-stage statistics. When the -stats flag is provided,
+ * the Driver should time and count each stage of the pipeline and write the
+ * statistics as JSON to the file provided (or stats.json if no file is
+ * provided). The same statistics should be registered as an MBean under the
+ * STATS_BEAN name so they can be watched with JConsole or VisualVM.
+ *
+ * Each stage is an object with the number of items handled by that stage as
+ * a "count" and the total nanoseconds spent in that stage as a "time", for
+ * example:
+ *
+ *   "traverse": { "count": 13, "time": 123456 }
+ *
+ * The traverse and read counts are the number of text files found and read,
+ * and the insert count is the number of words added to the index.
+ *
+ * Statistics are off by default, and must never change the other output.
+ * When they are off, nothing should be timed or registered, so they have no
+ * measurable cost (see BenchmarkTest and RegressionTest).
+ */
+public class StatsTest {
+
+	/** Stages that must be reported in the statistics output. */
+	public static final String[] STAGES = {
+			"traverse", "read", "clean", "stem", "insert", "search", "write"
+	};
+
+	/** Name the statistics MBean must be registered under. */
+	public static final String STATS_BEAN = "cs212:type=Statistics";
+
+	/** Number of text files in text/simple. */
+	public static final long SIMPLE_FILES = 13;
+
+	/** Number of words in the text files in text/simple. */
+	public static final long SIMPLE_WORDS = 113;
+
+	public static final Duration TIMEOUT = Duration.ofSeconds(60);
+
+	/**
+	 * Returns a number reported inside the statistics object of a stage, or -1
+	 * if that object has no numeric entry with that key of its own.
+	 *
+	 * @param json  the statistics output
+	 * @param stage the stage name
+	 * @param key   the key inside the object of the stage
+	 * @return the number, or -1 if not found
+	 */
+	public static long stat(String json, String stage, String key) {
+		// the object of the stage, up to its first nested object or end
+		Pattern pattern = Pattern.compile("\"" + Pattern.quote(stage) + "\"\\s*:\\s*\\{[^{}]*?\""
+				+ Pattern.quote(key) + "\"\\s*:\\s*(\\d+)[^{}]*}");
+		Matcher matcher = pattern.matcher(json);
+		return matcher.find() ? Long.parseLong(matcher.group(1)) : -1;
+	}
+
+	@Nested
+	public class OutputTest {
+
+		@Test
+		public void testStages() throws IOException {
+			Path stats = TestUtilities.ACTUAL_PATH.resolve("stats-text-simple.json");
+			Path results = TestUtilities.ACTUAL_PATH.resolve("results-stats.json");
+			Path index = TestUtilities.ACTUAL_PATH.resolve("index-stats.json");
+
+			String[] args = {
+					"-path", Paths.get("text", "simple").toString(),
+					"-search", Paths.get("query", "simple.txt").toString(),
+					"-results", results.toString(),
+					"-index", index.toString(),
+					"-stats", stats.toString()
+			};
+
+			Files.deleteIfExists(stats);
+
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkExceptions(args);
+			});
+
+			assertTrue(Files.isReadable(stats), "Unable to read statistics file.");
+			String json = new String(Files.readAllBytes(stats), StandardCharsets.UTF_8);
+
+			// every stage must have actually counted and timed something
+			for (String stage : STAGES) {
+				assertTrue(stat(json, stage, "count") > 0, "Missing or zero count for stage: " + stage);
+				assertTrue(stat(json, stage, "time") > 0, "Missing or zero time for stage: " + stage);
+			}
+
+			assertEquals(SIMPLE_FILES, stat(json, "traverse", "count"), "Wrong number of files traversed.");
+			assertEquals(SIMPLE_FILES, stat(json, "read", "count"), "Wrong number of files read.");
+			assertEquals(SIMPLE_WORDS, stat(json, "insert", "count"), "Wrong number of words indexed.");
+		}
+
+		@Test
+		public void testDefaultOutput() throws IOException {
+			String path = Paths.get("text", "simple", "hello.txt").toString();
+			String[] args = { "-path", path, "-stats" };
+
+			// make sure to delete old stats.json if it exists
+			Path output = Paths.get("stats.json");
+			Files.deleteIfExists(output);
+
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkExceptions(args);
+			});
+
+			// make sure a new stats.json was created
+			assertTrue(Files.exists(output));
+		}
+
+		@Test
+		public void testNoOutput() throws IOException {
+			String path = Paths.get("text", "simple", "hello.txt").toString();
+			String[] args = { "-path", path };
+
+			// make sure to delete old stats.json if it exists
+			Path output = Paths.get("stats.json");
+			Files.deleteIfExists(output);
+
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkExceptions(args);
+			});
+
+			// make sure statistics are off by default
+			assertFalse(Files.exists(output));
+		}
+	}
+
+	@Nested
+	public class ConsistencyTest {
+
+		@Test
+		public void testIndex() {
+			String filename = "index-text-simple.json";
+			Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+			Path expected = TestUtilities.EXPECTED_PATH.resolve("index-text").resolve(filename);
+
+			String[] args = {
+					"-path", Paths.get("text", "simple").toString(),
+					"-index", actual.toString(),
+					"-stats", TestUtilities.ACTUAL_PATH.resolve("stats-index.json").toString()
+			};
+
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkOutput(expected, actual, args);
+			});
+		}
+
+		@Test
+		public void testSearch() {
+			String filename = "results-text-letters-rfcs.json";
+			Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+			Path expected = TestUtilities.EXPECTED_PATH.resolve("results-text-partial").resolve(filename);
+
+			String[] args = {
+					"-path", Paths.get("text", "rfcs").toString(),
+					"-search", Paths.get("query", "letters.txt").toString(),
+					"-results", actual.toString(),
+					"-threads", "3",
+					"-stats", TestUtilities.ACTUAL_PATH.resolve("stats-search.json").toString()
+			};
+
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkOutput(expected, actual, args);
+			});
+		}
+	}
+
+	@Nested
+	public class ManagementTest {
+
+		/**
+		 * Unregisters the statistics MBean left behind by earlier runs in the same
+		 * JVM, so each test only sees the bean registered by its own run.
+		 *
+		 * @throws JMException if unable to unregister the bean
+		 */
+		@BeforeEach
+		public void unregister() throws JMException {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+			for (ObjectName name : server.queryNames(new ObjectName(STATS_BEAN), null)) {
+				server.unregisterMBean(name);
+			}
+		}
+
+		@Test
+		public void testRegistered() throws MalformedObjectNameException {
+			String[] args = {
+					"-path", Paths.get("text", "simple").toString(),
+					"-stats", TestUtilities.ACTUAL_PATH.resolve("stats-bean.json").toString()
+			};
+
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkExceptions(args);
+			});
+
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			Set<ObjectName> names = server.queryNames(new ObjectName(STATS_BEAN), null);
+			assertFalse(names.isEmpty(), "Statistics not registered as " + STATS_BEAN);
+		}
+
+		@Test
+		public void testNotRegistered() throws MalformedObjectNameException {
+			String[] args = { "-path", Paths.get("text", "simple").toString() };
+
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkExceptions(args);
+			});
+
+			// statistics are off, so nothing should be registered either
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			Set<ObjectName> names = server.queryNames(new ObjectName(STATS_BEAN), null);
+			assertTrue(names.isEmpty(), "Statistics registered as " + STATS_BEAN + " without -stats");
+		}
+	}
+}
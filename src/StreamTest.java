@@ -0,0 +1,216 @@
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Tests streaming search of very large query files. When the -batch flag is
+ * provided, the Driver should read the query file line by line, and keep the
+ * results of at most that many distinct queries in memory. Whenever the batch
+ * is full, the results should be written to a run file sorted by query in the
+ * spill directory (given by the -spill flag, or a temporary directory by
+ * default). The run files are then merged into the final -results output, and
+ * deleted.
+ *
+ * Queries that repeat across batches must only appear once in the output. The
+ * output must be exactly the same as without the -batch flag, no matter how
+ * small the batch is.
+ */
+public class StreamTest {
+
+	public static final Duration TIMEOUT = Duration.ofMinutes(3);
+
+	private static final long MEGABYTE = 1024 * 1024;
+
+	/** Batch size small enough to create many run files for every query file. */
+	public static final String BATCH = "2";
+
+	@Nested
+	public class SearchExactStreaming extends SearchTest.SearchExactTest {
+
+		@Override
+		public Stream<DynamicTest> generateTests(String[][] tests) {
+			return Stream.of(tests).map(params -> dynamicTest(params[0] + " (batch " + BATCH + ")", () -> {
+				String filename = String.format("results-text-%s.json", params[0]);
+				Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+				Path expected = TestUtilities.EXPECTED_PATH.resolve("results-text-exact").resolve(filename);
+
+				String[] args = {
+						"-path", params[2],
+						"-search", Paths.get("query", params[1]).toString(),
+						"-results", actual.toString(),
+						"-exact",
+						"-batch", BATCH
+				};
+
+				assertTimeout(TIMEOUT, () -> {
+					TestUtilities.checkOutput(expected, actual, args);
+				});
+			}));
+		}
+	}
+
+	@Nested
+	public class SearchPartialStreaming extends SearchTest.SearchExactTest {
+
+		@Override
+		public Stream<DynamicTest> generateTests(String[][] tests) {
+			return Stream.of(tests).map(params -> dynamicTest(params[0] + " (batch " + BATCH + ")", () -> {
+				String filename = String.format("results-text-%s.json", params[0]);
+				Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+				Path expected = TestUtilities.EXPECTED_PATH.resolve("results-text-partial").resolve(filename);
+
+				String[] args = {
+						"-path", params[2],
+						"-search", Paths.get("query", params[1]).toString(),
+						"-results", actual.toString(),
+						"-batch", BATCH
+				};
+
+				assertTimeout(TIMEOUT, () -> {
+					TestUtilities.checkOutput(expected, actual, args);
+				});
+			}));
+		}
+	}
+
+	@Nested
+	public class SearchPartialStreamingThreads extends SearchTest.SearchExactTest {
+
+		@Override
+		public Stream<DynamicTest> generateTests(String[][] tests) {
+			return Stream.of(tests).map(params -> dynamicTest(
+					params[0] + " (batch " + BATCH + ", 5 threads)", () -> {
+				String filename = String.format("results-text-%s.json", params[0]);
+				Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+				Path expected = TestUtilities.EXPECTED_PATH.resolve("results-text-partial").resolve(filename);
+
+				String[] args = {
+						"-path", params[2],
+						"-search", Paths.get("query", params[1]).toString(),
+						"-results", actual.toString(),
+						"-batch", BATCH,
+						"-threads", "5"
+				};
+
+				assertTimeout(TIMEOUT, () -> {
+					TestUtilities.checkOutput(expected, actual, args);
+				});
+			}));
+		}
+	}
+
+	@Nested
+	public class SpillTest {
+
+		@Test
+		public void testCleanup() throws IOException {
+			Path spill = TestUtilities.ACTUAL_PATH.resolve("spill-results");
+			Path actual = TestUtilities.ACTUAL_PATH.resolve("results-text-letters-spill.json");
+			Path expected = TestUtilities.EXPECTED_PATH.resolve("results-text-partial")
+					.resolve("results-text-letters-rfcs.json");
+
+			Files.createDirectories(spill);
+
+			String[] args = {
+					"-path", Paths.get("text", "rfcs").toString(),
+					"-search", Paths.get("query", "letters.txt").toString(),
+					"-results", actual.toString(),
+					"-batch", BATCH,
+					"-spill", spill.toString()
+			};
+
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkOutput(expected, actual, args);
+			});
+
+			try (Stream<Path> files = Files.list(spill)) {
+				assertTrue(files.count() == 0, "Run files were not deleted from " + spill);
+			}
+		}
+
+		@Test
+		public void testPeakHeap() throws IOException {
+			// a query log with many distinct queries, and results for most of them
+			Path query = TestUtilities.ACTUAL_PATH.resolve("query-log.txt");
+			Path unboundedOutput = TestUtilities.ACTUAL_PATH.resolve("results-query-log.json");
+			Path boundedOutput = TestUtilities.ACTUAL_PATH.resolve("results-query-log-batch.json");
+			new CorpusGenerator().generateQueries(query, 2000000);
+
+			Path corpus = ScalingTest.CORPUS_PATH.resolve("100mb");
+			new CorpusGenerator().generateCorpus(corpus, 1000, 100 * MEGABYTE);
+
+			String[] args1 = { "-path", corpus.toString() };
+			String[] args2 = {
+					"-path", corpus.toString(), "-search", query.toString(), "-results", unboundedOutput.toString()
+			};
+			String[] args3 = {
+					"-path", corpus.toString(), "-search", query.toString(), "-results", boundedOutput.toString(),
+					"-batch", "1000"
+			};
+
+			TestUtilities.measure(args1);
+			long index = TestUtilities.peakHeap();
+
+			TestUtilities.measure(args2);
+			long unbounded = TestUtilities.peakHeap();
+
+			TestUtilities.measure(args3);
+			long bounded = TestUtilities.peakHeap();
+
+			System.out.println();
+			System.out.printf("Streaming Benchmark (%d MB query log):%n", Files.size(query) / MEGABYTE);
+			System.out.printf("      Index: %6d MB%n", index / MEGABYTE);
+			System.out.printf("  Unbounded: %6d MB%n", unbounded / MEGABYTE);
+			System.out.printf("    Bounded: %6d MB%n%n", bounded / MEGABYTE);
+
+			// queries repeated across batches must still only be written once
+			assertTrue(TestUtilities.checkFiles(unboundedOutput, boundedOutput) > 0,
+					"Output with batches does not match output without batches.");
+			assertTrue(bounded < unbounded, "Batches did not lower the peak heap.");
+		}
+	}
+
+	@Nested
+	public class ExceptionsTest {
+
+		@Test
+		public void testInvalidBatch() {
+			String path = Paths.get("text", "simple").toString();
+			String query = Paths.get("query", "simple.txt").toString();
+			String[] args = { "-path", path, "-search", query, "-results", "-batch", "fox" };
+			assertTimeout(Duration.ofSeconds(30), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+
+		@Test
+		public void testZeroBatch() {
+			String path = Paths.get("text", "simple").toString();
+			String query = Paths.get("query", "simple.txt").toString();
+			String[] args = { "-path", path, "-search", query, "-results", "-batch", "0" };
+			assertTimeout(Duration.ofSeconds(30), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+
+		@Test
+		public void testBatchWithoutSearch() {
+			String path = Paths.get("text", "simple").toString();
+			String[] args = { "-path", path, "-results", "-batch", BATCH };
+			assertTimeout(Duration.ofSeconds(30), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+	}
+}
@@ -2,11 +2,22 @@ import static org.junit.jupiter.api.Assertions.assertTimeout;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.junit.jupiter.api.RepeatedTest;
 import org.junit.jupiter.api.Test;
@@ -18,6 +29,11 @@ public class StressTest {
 
 	private static final int THREADS = 5;
 
+	// number of snapshots to publish while searching
+	private static final int SNAPSHOTS = 10;
+
+	private static final Pattern QUERIES = Pattern.compile("\"queries\":\"([^\"]*)\"");
+
 	// timeout PER RUN (not for all runs)
 	private static final Duration TIMEOUT = Duration.ofMinutes(1);
 
@@ -72,6 +88,161 @@ public class StressTest {
 		});
 	}
 
+	/**
+	 * Runs a search for every query in a file and returns the compacted
+	 * -results entry of each normalized query.
+	 *
+	 * @param path  path to index
+	 * @param query query file to search
+	 * @return map from normalized query to compacted results entry
+	 * @throws IOException if unable to read the results
+	 */
+	private static Map<String, String> entries(Path path, Path query) throws IOException {
+		Path results = TestUtilities.ACTUAL_PATH.resolve("results-snapshot.json");
+
+		String[] args = {
+				"-path", path.toString(),
+				"-search", query.toString(),
+				"-results", results.toString()
+		};
+
+		Files.deleteIfExists(results);
+		TestUtilities.checkExceptions(args);
+
+		String json = ServerTest.compact(new String(Files.readAllBytes(results), StandardCharsets.UTF_8));
+		Map<String, String> entries = new HashMap<>();
+
+		// split the array into its {"queries":...,"results":[...]} entries
+		for (String entry : json.substring(1, json.length() - 1).split(",(?=\\{\"queries\")")) {
+			Matcher matcher = QUERIES.matcher(entry);
+
+			if (matcher.find()) {
+				entries.put(matcher.group(1), entry);
+			}
+		}
+
+		return entries;
+	}
+
+	/**
+	 * Atomically replaces the contents of a file, so readers see either the
+	 * old or the new contents but never a mix.
+	 *
+	 * @param source file with the new contents
+	 * @param target file to replace
+	 * @throws IOException if unable to replace the file
+	 */
+	private static void replace(Path source, Path target) throws IOException {
+		Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+		Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+		Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	@RepeatedTest(5)
+	public void testSearchDuringReindex() throws IOException {
+		// one file alternates between two versions while the rest stay the same
+		Path directory = TestUtilities.ACTUAL_PATH.resolve("snapshot");
+		Path changing = directory.resolve("changing.txt");
+		Path version1 = Paths.get("text", "rfcs", "rfc475.txt");
+		Path version2 = Paths.get("text", "rfcs", "rfc5646.txt");
+		Path query = Paths.get("query", "letters.txt");
+
+		Files.createDirectories(directory);
+		Files.copy(Paths.get("text", "rfcs", "rfc6797.txt"), directory.resolve("static1.txt"), StandardCopyOption.REPLACE_EXISTING);
+		Files.copy(Paths.get("text", "rfcs", "rfc6805.txt"), directory.resolve("static2.txt"), StandardCopyOption.REPLACE_EXISTING);
+
+		// every response must match one of the two complete versions of the index
+		replace(version1, changing);
+		Map<String, String> expected1 = entries(directory, query);
+
+		replace(version2, changing);
+		Map<String, String> expected2 = entries(directory, query);
+
+		List<String> queries = Files.readAllLines(query, StandardCharsets.UTF_8);
+
+		assertTimeout(ServerTest.TIMEOUT, () -> {
+			int port = ServerTest.freePort();
+
+			String[] args = {
+					"-path", directory.toString(),
+					"-serve", Integer.toString(port),
+					"-reindex",
+					"-threads", Integer.toString(THREADS)
+			};
+
+			Thread server = ServerTest.startServer(args, port);
+
+			AtomicBoolean searching = new AtomicBoolean(true);
+			AtomicReference<Exception> failure = new AtomicReference<>();
+			Thread writer = new Thread(() -> {
+				try {
+					for (int i = 0; searching.get(); i++) {
+						replace(i % 2 == 0 ? version1 : version2, changing);
+						Thread.sleep(50);
+					}
+				}
+				catch (IOException | InterruptedException e) {
+					// reported by the searching thread, not mistaken for missing snapshots
+					failure.set(e);
+				}
+			});
+
+			writer.start();
+
+			try {
+				long first = Long.parseLong(ServerTest.request(port, "/snapshot").trim());
+				long published = first;
+
+				boolean seen1 = false;
+				boolean seen2 = false;
+
+				// assertTimeout only checks the time after the test returns
+				long deadline = System.nanoTime() + ServerTest.TIMEOUT.toNanos() / 2;
+
+				// keep searching until several new snapshots were published
+				while (published - first < SNAPSHOTS && failure.get() == null && System.nanoTime() < deadline) {
+					for (String line : queries) {
+						String response = ServerTest.compact(ServerTest.search(port, line, false));
+						Matcher matcher = QUERIES.matcher(response);
+
+						if (!matcher.find() || matcher.group(1).isEmpty()) {
+							continue;
+						}
+
+						String key = matcher.group(1);
+						boolean match1 = response.equals(expected1.get(key));
+						boolean match2 = response.equals(expected2.get(key));
+
+						assertTrue(match1 || match2, "Response does not match a complete snapshot: " + response);
+
+						seen1 |= match1 && !match2;
+						seen2 |= match2 && !match1;
+					}
+
+					published = Long.parseLong(ServerTest.request(port, "/snapshot").trim());
+				}
+
+				searching.set(false);
+				writer.join();
+
+				if (failure.get() != null) {
+					StringWriter trace = new StringWriter();
+					failure.get().printStackTrace(new PrintWriter(trace));
+					fail("Unable to rewrite " + changing + ":\n" + trace);
+				}
+
+				assertTrue(published - first >= SNAPSHOTS, String.format(
+						"Only %d new snapshots published before the deadline.", published - first));
+				assertTrue(seen1 && seen2, "Searches never saw both versions of the index.");
+			}
+			finally {
+				searching.set(false);
+				writer.join();
+				ServerTest.stopServer(server, port);
+			}
+		});
+	}
+
 	@Test
 	public void testIndexRuntime() {
 		String path = Paths.get("text").toString();
@@ -82,36 +253,7 @@ public class StressTest {
 		long[] singleRuns = benchmark(args1);
 		long[] threadRuns = benchmark(args2);
 
-		long singleTotal = 0;
-		long threadTotal = 0;
-
-		// print report of runs
-		System.out.println("Indexing Benchmark:");
-		System.out.printf("%-6s    %10s    %10s%n", "Warmup", "Single", "Multi");
-		for (int i = 0; i < WARM_RUNS; i++) {
-			System.out.printf("%-6d    %10.6f    %10.6f%n",
-					i + 1,
-					singleRuns[i] / 1000000000.0,
-					threadRuns[i] / 1000000000.0);
-		}
-
-		System.out.printf("%-6s    %10s    %10s%n", "Timed", "Single", "Multi");
-		for (int i = WARM_RUNS; i < WARM_RUNS + TIME_RUNS; i++) {
-			singleTotal += singleRuns[i];
-			threadTotal += threadRuns[i];
-			System.out.printf("%-6d    %10.6f    %10.6f%n",
-					i + 1,
-					singleRuns[i] / 1000000000.0,
-					threadRuns[i] / 1000000000.0);
-		}
-
-		double singleAverage = (double) singleTotal / TIME_RUNS;
-		double threadAverage = (double) threadTotal / TIME_RUNS;
-
-		System.out.println();
-		System.out.printf("%d Threads: %10.6f s%n", 1, singleAverage / 1000000000.0);
-		System.out.printf("%d Threads: %10.6f s%n", THREADS, threadAverage / 1000000000.0);
-		System.out.printf("  Speedup: %10.6f %n%n", singleAverage / threadAverage);
+		report("Indexing Benchmark:", singleRuns, threadRuns);
 	}
 
 	@Test
@@ -125,11 +267,88 @@ public class StressTest {
 		long[] singleRuns = benchmark(args1);
 		long[] threadRuns = benchmark(args2);
 
+		double[] averages = report("Searching Benchmark:", singleRuns, threadRuns);
+
+		assertTrue(averages[0] - averages[1] > 0);
+	}
+
+	@RepeatedTest(5)
+	public void testLargeFileConsistency() {
+		String filename = "index-text-guten-1400-0.json";
+		Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+		Path expected = TestUtilities.EXPECTED_PATH.resolve("index-text").resolve(filename);
+
+		String[] args = {
+				"-path", Paths.get("text", "gutenberg", "1400-0.txt").toString(),
+				"-index", actual.toString(),
+				"-threads", Integer.toString(THREADS)
+		};
+
+		assertTimeout(TIMEOUT, () -> {
+			TestUtilities.checkOutput(expected, actual, args);
+		});
+	}
+
+	@Test
+	public void testLargeFileRuntime() {
+		// a single large file should still be spread across all of the workers
+		String path = Paths.get("text", "gutenberg", "1400-0.txt").toString();
+
+		String[] args1 = { "-path", path, "-threads", String.valueOf(1) };
+		String[] args2 = { "-path", path, "-threads", String.valueOf(THREADS) };
+
+		long[] singleRuns = benchmark(args1);
+		long[] threadRuns = benchmark(args2);
+
+		double[] averages = report("Large File Benchmark:", singleRuns, threadRuns);
+
+		assertTrue(averages[0] - averages[1] > 0);
+	}
+
+	@Test
+	public void testVirtualRuntime() {
+		// crawling is I/O-bound, so compare a fixed pool against virtual threads
+		String url = "https://www.cs.usfca.edu/~cs212/birds/birds.html";
+		String limit = String.valueOf(50);
+
+		String[] args1 = { "-url", url, "-limit", limit, "-threads", String.valueOf(THREADS) };
+		String[] args2 = { "-url", url, "-limit", limit, "-threads", "virtual" };
+
+		long[] poolRuns = benchmark(args1);
+		long[] virtualRuns = benchmark(args2);
+
+		long poolTotal = 0;
+		long virtualTotal = 0;
+
+		for (int i = WARM_RUNS; i < WARM_RUNS + TIME_RUNS; i++) {
+			poolTotal += poolRuns[i];
+			virtualTotal += virtualRuns[i];
+		}
+
+		double poolAverage = (double) poolTotal / TIME_RUNS;
+		double virtualAverage = (double) virtualTotal / TIME_RUNS;
+
+		System.out.println("Virtual Crawl Benchmark:");
+		System.out.printf("%d Threads: %10.6f s%n", THREADS, poolAverage / 1000000000.0);
+		System.out.printf("  Virtual: %10.6f s%n", virtualAverage / 1000000000.0);
+		System.out.printf("  Speedup: %10.6f %n%n", poolAverage / virtualAverage);
+	}
+
+	/**
+	 * Prints a report of the warmup and timed runs, and returns the average
+	 * single and multithreaded runtimes of the timed runs.
+	 *
+	 * @param title      title of the report
+	 * @param singleRuns runtimes of the single threaded runs
+	 * @param threadRuns runtimes of the multithreaded runs
+	 * @return average single and multithreaded runtimes (in that order)
+	 */
+	private double[] report(String title, long[] singleRuns, long[] threadRuns) {
 		long singleTotal = 0;
 		long threadTotal = 0;
 
 		// print report of runs
-		System.out.println("Searching Benchmark:");
+		System.out.println(title);
 		System.out.printf("%-6s    %10s    %10s%n", "Warmup", "Single", "Multi");
 		for (int i = 0; i < WARM_RUNS; i++) {
 			System.out.printf("%-6d    %10.6f    %10.6f%n",
@@ -156,7 +375,7 @@ public class StressTest {
 		System.out.printf("%d Threads: %10.6f s%n", THREADS, threadAverage / 1000000000.0);
 		System.out.printf("  Speedup: %10.6f %n%n", singleAverage / threadAverage);
 
-		assertTrue(singleAverage - threadAverage > 0);
+		return new double[] { singleAverage, threadAverage };
 	}
 
 	private long[] benchmark(String[] args) {
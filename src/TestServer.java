@@ -0,0 +1,157 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/*
+ * A small local web server for crawl tests that should not depend on the
+ * network. Serves HTML pages from memory, and can inject a fixed latency
+ * before every page to simulate a slow remote server. Redirects and custom
+ * handlers can be added to simulate misbehaving servers.
+ */
+public class TestServer implements AutoCloseable {
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final Map<String, String> pages;
+
+	private volatile long latency;
+
+	/**
+	 * Starts a server on a free port of the loopback address.
+	 *
+	 * @throws IOException if unable to start the server
+	 */
+	public TestServer() throws IOException {
+		pages = new ConcurrentHashMap<>();
+		latency = 0;
+
+		executor = Executors.newCachedThreadPool();
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.setExecutor(executor);
+		server.createContext("/", this::handlePage);
+		server.start();
+	}
+
+	/**
+	 * Returns the full URL for a path on this server.
+	 *
+	 * @param path the absolute path (e.g. "/index.html")
+	 * @return URL for the path on this server
+	 */
+	public URL url(String path) {
+		try {
+			InetSocketAddress address = server.getAddress();
+			return new URL("http", address.getAddress().getHostAddress(), address.getPort(), path);
+		}
+		catch (MalformedURLException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	/**
+	 * Adds (or replaces) a HTML page served at the path.
+	 *
+	 * @param path the absolute path (e.g. "/index.html")
+	 * @param html the page content
+	 */
+	public void addPage(String path, String html) {
+		pages.put(path, html);
+	}
+
+	/**
+	 * Adds a redirect from the path to the location provided.
+	 *
+	 * @param path     the absolute path (e.g. "/old.html")
+	 * @param location the URL or path to redirect to
+	 */
+	public void addRedirect(String path, String location) {
+		addHandler(path, exchange -> {
+			exchange.getResponseHeaders().set("Location", location);
+			exchange.sendResponseHeaders(302, -1);
+			exchange.close();
+		});
+	}
+
+	/**
+	 * Adds a custom handler for every request with the path provided. Since
+	 * contexts match by prefix, avoid paths that are prefixes of other paths.
+	 *
+	 * @param path    the absolute path (e.g. "/huge")
+	 * @param handler the handler for requests to that path
+	 */
+	public void addHandler(String path, HttpHandler handler) {
+		server.createContext(path, handler);
+	}
+
+	/**
+	 * Sets the delay before every response.
+	 *
+	 * @param latency delay before every response
+	 */
+	public void setLatency(Duration latency) {
+		this.latency = latency.toMillis();
+	}
+
+	/**
+	 * Serves a page from memory after the configured latency, or responds with
+	 * 404 Not Found if there is no page at that path.
+	 *
+	 * @param exchange the request and response
+	 * @throws IOException if unable to respond
+	 */
+	private void handlePage(HttpExchange exchange) throws IOException {
+		try {
+			Thread.sleep(latency);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		String html = pages.get(exchange.getRequestURI().getPath());
+
+		if (html == null) {
+			respond(exchange, 404, "text/html", "<html><body>Not Found</body></html>");
+		}
+		else {
+			respond(exchange, 200, "text/html; charset=utf-8", html);
+		}
+	}
+
+	/**
+	 * Sends a complete response and closes the exchange.
+	 *
+	 * @param exchange the request and response
+	 * @param status   the HTTP status code
+	 * @param type     the content type
+	 * @param body     the response body
+	 * @throws IOException if unable to respond
+	 */
+	public static void respond(HttpExchange exchange, int status, String type, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", type);
+		exchange.sendResponseHeaders(status, bytes.length);
+
+		try (OutputStream output = exchange.getResponseBody()) {
+			output.write(bytes);
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+}
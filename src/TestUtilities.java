@@ -1,13 +1,25 @@
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 
 import org.junit.jupiter.api.Assertions;
@@ -19,6 +31,9 @@ public class TestUtilities {
 	public static final Path ACTUAL_PATH = Paths.get("out");
 	public static final Path EXPECTED_PATH = Paths.get("expected");
 
+	private static final int WARM_RUNS = 3;
+	private static final int TIME_RUNS = 5;
+
 	/**
 	 * Produces debug-friendly output when a JUnit test fails.
 	 *
@@ -201,4 +216,188 @@ public class TestUtilities {
 		}
 	}
 
+	/**
+	 * Runs {@link Driver} once and returns the elapsed time. Resets the peak
+	 * memory usage of the heap before running.
+	 *
+	 * @param args arguments to pass to {@link Driver}
+	 * @return elapsed time in nanoseconds
+	 */
+	public static long measure(String[] args) {
+		long start = 0;
+		long elapsed = 0;
+
+		resetPeakHeap();
+
+		try {
+			System.out.printf("Running Driver %s...%n", String.join(" ", args));
+			start = System.nanoTime();
+			Driver.main(args);
+			elapsed = System.nanoTime() - start;
+		}
+		catch (Exception e) {
+			StringWriter writer = new StringWriter();
+			e.printStackTrace(new PrintWriter(writer));
+
+			String debug = String.format("%nArguments:%n    [%s]%nException:%n    %s%n", String.join(" ", args),
+					writer.toString());
+			Assertions.fail(debug);
+		}
+
+		return elapsed;
+	}
+
+	/**
+	 * Runs the garbage collector and resets the peak usage of every memory
+	 * pool, so that {@link #peakHeap()} only includes later allocations.
+	 */
+	public static void resetPeakHeap() {
+		System.gc();
+
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			pool.resetPeakUsage();
+		}
+	}
+
+	/**
+	 * Returns the sum of the peak usage of every heap memory pool since the
+	 * last reset. This is an upper bound on the peak heap usage.
+	 *
+	 * @return peak heap usage in bytes
+	 */
+	public static long peakHeap() {
+		long peak = 0;
+
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+
+		return peak;
+	}
+
+	/**
+	 * Returns the average runtime of several timed runs of {@link Driver},
+	 * after several warmup runs.
+	 *
+	 * @param args arguments to pass to {@link Driver}
+	 * @return average runtime in nanoseconds
+	 */
+	public static double average(String[] args) {
+		for (int i = 0; i < WARM_RUNS; i++) {
+			measure(args);
+		}
+
+		long total = 0;
+
+		for (int i = 0; i < TIME_RUNS; i++) {
+			total += measure(args);
+		}
+
+		return (double) total / TIME_RUNS;
+	}
+
+	/**
+	 * Writes word counts in the same pretty JSON format as the -locations
+	 * output.
+	 *
+	 * @param counts map from location to word count
+	 * @param path   file to write to
+	 * @throws IOException if unable to write the file
+	 */
+	public static void writeLocations(SortedMap<String, Integer> counts, Path path) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			Iterator<Map.Entry<String, Integer>> iterator = counts.entrySet().iterator();
+			writer.write("{");
+
+			while (iterator.hasNext()) {
+				Map.Entry<String, Integer> entry = iterator.next();
+				writer.write(String.format("%n\t\"%s\": %d", entry.getKey(), entry.getValue()));
+
+				if (iterator.hasNext()) {
+					writer.write(",");
+				}
+			}
+
+			writer.write(String.format("%n}"));
+		}
+	}
+
+	/**
+	 * Runs a main class in a fresh JVM with the same classpath as this JVM,
+	 * and returns the numbers it wrote to its output file. The output file is
+	 * always the first argument passed to the main class, and should be
+	 * written with {@link #writeNumbers(Path, long...)}.
+	 *
+	 * @param flags   JVM flags separated by whitespace (possibly empty)
+	 * @param main    main class to run
+	 * @param args    remaining arguments to pass to the main class
+	 * @param timeout how long to wait for the JVM to exit
+	 * @return numbers written to the output file, in order
+	 * @throws IOException          if unable to start the JVM or read its output
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public static long[] fork(String flags, String main, String[] args, Duration timeout)
+			throws IOException, InterruptedException {
+		Files.createDirectories(ACTUAL_PATH);
+		Path output = Files.createTempFile(ACTUAL_PATH, "fork-", ".txt");
+
+		List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+
+		// an empty or blank property must not become an empty argument
+		for (String flag : flags.trim().split("\\s+")) {
+			if (!flag.isEmpty()) {
+				command.add(flag);
+			}
+		}
+
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(main);
+		command.add(output.toString());
+		command.addAll(Arrays.asList(args));
+
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectErrorStream(true);
+		builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+
+		Process process = builder.start();
+
+		if (!process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+			process.destroyForcibly();
+			Files.deleteIfExists(output);
+			Assertions.fail("Timed out running " + main + " " + String.join(" ", args));
+		}
+
+		Assertions.assertEquals(0, process.exitValue(), "Non-zero exit running " + main + " " + String.join(" ", args));
+
+		List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+		Files.delete(output);
+
+		long[] numbers = new long[lines.size()];
+
+		for (int i = 0; i < numbers.length; i++) {
+			numbers[i] = Long.parseLong(lines.get(i).trim());
+		}
+
+		return numbers;
+	}
+
+	/**
+	 * Writes numbers one per line, so they can be read back by
+	 * {@link #fork(String, String, String[], Duration)}.
+	 *
+	 * @param output  file to write to
+	 * @param numbers numbers to write
+	 * @throws IOException if unable to write the file
+	 */
+	public static void writeNumbers(Path output, long... numbers) throws IOException {
+		try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8))) {
+			for (long number : numbers) {
+				writer.println(number);
+			}
+		}
+	}
 }
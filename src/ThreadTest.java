@@ -58,6 +58,17 @@ public class ThreadTest {
 			});
 		}
 
+		@Test
+		public void testVirtualThreads() {
+			String path = Paths.get("html", "simple", "hello.html").toString();
+			String query = Paths.get("query", "simple.txt").toString();
+			String threads = "virtual";
+			String[] args = { "-path", path, "-search", query, "-threads", threads };
+			assertTimeout(Duration.ofSeconds(30), () -> {
+				TestUtilities.checkExceptions(args);
+			});
+		}
+
 		@Test
 		public void testDefaultThreads() {
 			String path = Paths.get("html", "simple", "hello.html").toString();
@@ -165,4 +176,51 @@ public class ThreadTest {
 			return Stream.of(one, two, five).flatMap(s -> s);
 		}
 	}
+
+	@Nested
+	public class IndexOutputVirtual extends IndexTest.IndexOutputTest {
+
+		@Override
+		public Stream<DynamicTest> generateTests(String[][] tests) {
+			return Stream.of(tests).map(params -> dynamicTest(params[0] + " (virtual threads)", () -> {
+				String filename = String.format("index-text-%s.json", params[0]);
+				Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+				Path expected = TestUtilities.EXPECTED_PATH.resolve("index-text").resolve(filename);
+
+				String[] args = {
+						"-path", params[1],
+						"-index", actual.toString(),
+						"-threads", "virtual"
+				};
+
+				assertTimeout(Duration.ofMinutes(3), () -> {
+					TestUtilities.checkOutput(expected, actual, args);
+				});
+			}));
+		}
+	}
+
+	@Nested
+	public class SearchPartialVirtual extends SearchTest.SearchExactTest {
+
+		@Override
+		public Stream<DynamicTest> generateTests(String[][] tests) {
+			return Stream.of(tests).map(params -> dynamicTest(params[0] + " (virtual threads)", () -> {
+				String filename = String.format("results-text-%s.json", params[0]);
+				Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+				Path expected = TestUtilities.EXPECTED_PATH.resolve("results-text-partial").resolve(filename);
+
+				String[] args = {
+						"-path", params[2],
+						"-search", Paths.get("query", params[1]).toString(),
+						"-results", actual.toString(),
+						"-threads", "virtual"
+				};
+
+				assertTimeout(Duration.ofMinutes(3), () -> {
+					TestUtilities.checkOutput(expected, actual, args);
+				});
+			}));
+		}
+	}
 }
@@ -0,0 +1,110 @@
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.SortedMap;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+/*
+ * Tests that directory traversal finds every text file, no matter how many
+ * threads are used to traverse and index the directory. Uses both the
+ * provided text/ directory and a generated tree of many small files, where
+ * traversal dominates the runtime.
+ *
+ * This test is not part of any project test group. You have to run it
+ * separately. The first run will take awhile to generate the tree.
+ */
+public class TraversalTest {
+
+	public static final Path TREE_PATH = TestUtilities.ACTUAL_PATH.resolve("tree");
+
+	private static final int FILES = 100000;
+
+	private static final int THREADS = 5;
+
+	// timeout PER RUN (not for all runs)
+	private static final Duration TIMEOUT = Duration.ofMinutes(5);
+
+	private static Path expectedTree;
+
+	/**
+	 * Generates the tree of small files (if necessary) and the matching
+	 * expected locations output.
+	 *
+	 * @throws IOException if unable to generate the tree
+	 */
+	@BeforeAll
+	public static void generateTree() throws IOException {
+		System.out.printf("%nGenerating: %s...%n", TREE_PATH.toString());
+		SortedMap<String, Integer> counts = new CorpusGenerator().generateTree(TREE_PATH, FILES);
+
+		expectedTree = TestUtilities.ACTUAL_PATH.resolve("expected-location-tree.json");
+		TestUtilities.writeLocations(counts, expectedTree);
+	}
+
+	@TestFactory
+	public Stream<DynamicTest> testLocations() {
+		return Stream.of(1, 2, THREADS).map(threads -> dynamicTest(
+				"text (" + threads + " threads)", () -> {
+			String filename = "index-text-locations.json";
+			Path actual = TestUtilities.ACTUAL_PATH.resolve(filename);
+			Path expected = TestUtilities.EXPECTED_PATH.resolve(filename);
+
+			String[] args = {
+					"-path", "text",
+					"-locations", actual.toString(),
+					"-threads", Integer.toString(threads)
+			};
+
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkOutput(expected, actual, args);
+			});
+		}));
+	}
+
+	@TestFactory
+	public Stream<DynamicTest> testTree() {
+		return Stream.of(1, THREADS).map(threads -> dynamicTest(
+				"tree (" + threads + " threads)", () -> {
+			Path actual = TestUtilities.ACTUAL_PATH.resolve("location-tree.json");
+
+			String[] args = {
+					"-path", TREE_PATH.toString(),
+					"-locations", actual.toString(),
+					"-threads", Integer.toString(threads)
+			};
+
+			assertTimeout(TIMEOUT, () -> {
+				TestUtilities.checkOutput(expectedTree, actual, args);
+			});
+		}));
+	}
+
+	@Test
+	public void testTreeRuntime() {
+		String path = TREE_PATH.toString();
+
+		String[] args1 = { "-path", path, "-threads", String.valueOf(1) };
+		String[] args2 = { "-path", path, "-threads", String.valueOf(THREADS) };
+
+		// one warmup run each, since every run touches 100k files
+		TestUtilities.measure(args1);
+		TestUtilities.measure(args2);
+
+		double single = TestUtilities.measure(args1) / 1000000000.0;
+		double multi = TestUtilities.measure(args2) / 1000000000.0;
+
+		System.out.println();
+		System.out.printf("Traversal Benchmark (%d files):%n", FILES);
+		System.out.printf("%d Threads: %10.6f s%n", 1, single);
+		System.out.printf("%d Threads: %10.6f s%n", THREADS, multi);
+		System.out.printf("  Speedup: %10.6f %n%n", single / multi);
+	}
+}
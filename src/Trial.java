@@ -0,0 +1,104 @@
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/*
+ * Runs one benchmark trial of the Driver inside its own JVM, so that runtime
+ * tests are not affected by the JIT profiles, heap state, or static caches
+ * left behind by other tests. Started by ForkTest, not by JUnit.
+ *
+ * The Driver is run until it is warmed up, which is detected when the
+ * relative standard deviation of the last WINDOW runs drops below STABLE (or
+ * after MAX_WARM runs). Then the Driver is run TIME_RUNS more times, and the
+ * number of warmup runs followed by the timed runtimes in nanoseconds are
+ * written one per line to the output file.
+ *
+ * Usage: java Trial <output> <driver arguments...>
+ */
+public class Trial {
+
+	/** Number of recent runs used to detect when the Driver is warmed up. */
+	public static final int WINDOW = 5;
+
+	/** Relative standard deviation of recent runs that counts as warmed up. */
+	public static final double STABLE = 0.05;
+
+	/** Maximum number of warmup runs, even if runtimes never stabilize. */
+	public static final int MAX_WARM = 30;
+
+	/** Number of timed runs after warmup. */
+	public static final int TIME_RUNS = 5;
+
+	/**
+	 * Returns the relative standard deviation (coefficient of variation) of the
+	 * last values.
+	 *
+	 * @param values the values
+	 * @param count  the number of values at the start of the array to use
+	 * @param window the number of values at the end of those to consider
+	 * @return standard deviation divided by mean
+	 */
+	public static double variation(long[] values, int count, int window) {
+		double mean = 0;
+
+		for (int i = count - window; i < count; i++) {
+			mean += values[i];
+		}
+
+		mean /= window;
+
+		double squares = 0;
+
+		for (int i = count - window; i < count; i++) {
+			squares += (values[i] - mean) * (values[i] - mean);
+		}
+
+		return Math.sqrt(squares / (window - 1)) / mean;
+	}
+
+	/**
+	 * Runs the Driver once and returns the elapsed time.
+	 *
+	 * @param args arguments to pass to {@link Driver}
+	 * @return elapsed time in nanoseconds
+	 * @throws Exception if the Driver throws an exception
+	 */
+	public static long time(String[] args) throws Exception {
+		long start = System.nanoTime();
+		Driver.main(args);
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Warms up the Driver and writes the timed runtimes to the output file.
+	 *
+	 * @param args output file followed by the Driver arguments
+	 * @throws Exception if unable to run the Driver or write the output file
+	 */
+	public static void main(String[] args) throws Exception {
+		Path output = Paths.get(args[0]);
+		String[] driver = Arrays.copyOfRange(args, 1, args.length);
+
+		long[] warm = new long[MAX_WARM];
+		int warmRuns = 0;
+
+		while (warmRuns < MAX_WARM) {
+			warm[warmRuns] = time(driver);
+			warmRuns++;
+
+			if (warmRuns >= WINDOW && variation(warm, warmRuns, WINDOW) < STABLE) {
+				break;
+			}
+		}
+
+		// number of warmup runs first, then the timed runs
+		long[] results = new long[TIME_RUNS + 1];
+		results[0] = warmRuns;
+
+		for (int i = 1; i <= TIME_RUNS; i++) {
+			results[i] = time(driver);
+		}
+
+		TestUtilities.writeNumbers(output, results);
+	}
+}